@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.config.CacheConfig;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmSearchService;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.PopularFilmsService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.*;
+
+// Хранилища и сервисы, заполненные синтетическими данными заданного размера
+@State(Scope.Benchmark)
+public class SeededStorages {
+
+    // Пользователи сверх users без лайков и друзей: бенчмарки записи ставят и снимают их лайки,
+    // не трогая лайки из начальных данных
+    private static final int RESERVED_USERS = 100;
+
+    @Param({"1000", "10000"})
+    public int films;
+
+    @Param({"1000"})
+    public int users;
+
+    @Param({"20"})
+    public int likesPerFilm;
+
+    @Param({"20"})
+    public int friendsPerUser;
+
+    public FilmDbStorage filmDbStorage;
+    public UserDbStorage userDbStorage;
+    public InMemoryFilmStorage inMemoryFilmStorage;
+    public InMemoryUserStorage inMemoryUserStorage;
+    public FilmService filmService;
+    public UserService userService;
+    public RecommendationService recommendationService;
+    public FilmSearchService filmSearchService;
+    public PopularFilmsService popularFilmsService;
+    public TrendingFilmsService trendingFilmsService;
+
+    private EmbeddedDatabase database;
+    private FriendGraphIndex friendGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("classpath:schema.sql")
+                .addScript("classpath:data.sql")
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        ReferenceDataCache referenceData = new ReferenceDataCache(jdbcTemplate);
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+        ContentVersions contentVersions = new ContentVersions(referenceData);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, referenceData, contentVersions,
+                new EntityCache<>("films", 10_000, Duration.ofMinutes(5), CacheConfig::copyFilm, meterRegistry));
+        friendGraph = new FriendGraphIndex(jdbcTemplate);
+        userDbStorage = new UserDbStorage(jdbcTemplate, friendGraph,
+                new EntityCache<>("users", 10_000, Duration.ofMinutes(5), CacheConfig::copyUser, meterRegistry));
+        inMemoryUserStorage = new InMemoryUserStorage();
+        inMemoryFilmStorage = new InMemoryFilmStorage(referenceData, contentVersions, inMemoryUserStorage);
+        userService = new UserService(userDbStorage, validator);
+        recommendationService = new RecommendationService(filmDbStorage, userService, meterRegistry);
+        filmSearchService = new FilmSearchService(filmDbStorage);
+        popularFilmsService = new PopularFilmsService(filmDbStorage, referenceData, contentVersions,
+                meterRegistry);
+        trendingFilmsService = new TrendingFilmsService(filmDbStorage);
+        filmService = new FilmService(filmDbStorage, userService, referenceData, validator,
+                Optional.empty(), recommendationService, filmSearchService, popularFilmsService,
+                trendingFilmsService);
+
+        seed(jdbcTemplate);
+        recommendationService.rebuild();
+        filmSearchService.rebuild();
+        popularFilmsService.rebuild();
+        trendingFilmsService.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    public int randomFilmId(SplittableRandom random) {
+        return random.nextInt(films) + 1;
+    }
+
+    public int randomUserId(SplittableRandom random) {
+        return random.nextInt(users) + 1;
+    }
+
+    // Пользователь, у которого в начальных данных нет лайков
+    public int randomReservedUserId(SplittableRandom random) {
+        return users + random.nextInt(RESERVED_USERS) + 1;
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+
+        List<Object[]> userRows = new ArrayList<>();
+        for (int id = 1; id <= users + RESERVED_USERS; id++) {
+            User user = new User(0, "user" + id + "@example.com", "user" + id, "User " + id,
+                    LocalDate.of(1990, 1, 1).plusDays(id % 5000));
+            inMemoryUserStorage.createUser(user);
+            userRows.add(new Object[]{user.getEmail(), user.getLogin(), user.getName(),
+                    Date.valueOf(user.getBirthday())});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                userRows);
+
+        List<Object[]> filmRows = new ArrayList<>();
+        List<Object[]> genreRows = new ArrayList<>();
+        for (int id = 1; id <= films; id++) {
+            int genreId = id % 6 + 1;
+            int mpaId = id % 5 + 1;
+            Film film = new Film(0, "Фильм " + id, "Описание фильма " + id,
+                    LocalDate.of(1950, 1, 1).plusDays(id % 25000), 90 + id % 60,
+                    List.of(new Genre(genreId, null)), new MpaRating(mpaId, null));
+            inMemoryFilmStorage.addFilm(film);
+            filmRows.add(new Object[]{film.getName(), film.getDescription(),
+                    Date.valueOf(film.getReleaseDate()), film.getDuration(), mpaId});
+            genreRows.add(new Object[]{id, genreId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO films (name, description, release_date, duration, mpa_id) "
+                + "VALUES (?, ?, ?, ?, ?)", filmRows);
+        jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genreRows);
+
+        List<Object[]> likeRows = new ArrayList<>();
+        for (int filmId = 1; filmId <= films; filmId++) {
+            int likes = random.nextInt(likesPerFilm * 2 + 1);
+            Set<Integer> likedBy = new HashSet<>();
+            while (likedBy.size() < Math.min(likes, users)) {
+                likedBy.add(random.nextInt(users) + 1);
+            }
+            for (int userId : likedBy) {
+                inMemoryFilmStorage.addLike(filmId, userId);
+                likeRows.add(new Object[]{filmId, userId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)", likeRows);
+        filmDbStorage.reconcileLikesCounts();
+
+        List<Object[]> friendRows = new ArrayList<>();
+        for (int userId = 1; userId <= users; userId++) {
+            Set<Integer> friends = new HashSet<>();
+            while (friends.size() < Math.min(friendsPerUser, users - 1)) {
+                int friendId = random.nextInt(users) + 1;
+                if (friendId != userId) {
+                    friends.add(friendId);
+                }
+            }
+            for (int friendId : friends) {
+                inMemoryUserStorage.addFriend(userId, friendId);
+                friendRows.add(new Object[]{userId, friendId, false});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO friendships (user_id, friend_id, is_confirmed) VALUES (?, ?, ?)",
+                friendRows);
+        friendGraph.reload();
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+// Время до первого ответа (GET /genres) после запуска процесса в разных режимах:
+//   always         - скрипты схемы и справочников выполняются при каждом запуске;
+//   versioned      - профиль fast-startup, скрипты пропускаются при неизменной версии схемы;
+//   versioned+aot  - то же с контекстом, подготовленным AOT-обработкой;
+//   aot+cds        - то же с архивом классов CDS.
+// База - файл во временном каталоге, первый запуск каждого режима создает ее и не учитывается:
+// измеряется перезапуск с существующей базой, как при выкладке.
+// Запуск: mvn -Pbenchmark,fast-startup package -DskipTests exec:exec@startup-comparison
+// Без профиля fast-startup сравниваются только always и versioned.
+// Параметры (системные свойства): startup.runs.
+public class StartupTimeComparison {
+
+    private static final int RUNS = Integer.getInteger("startup.runs", 5);
+    private static final Path ARCHIVE = Path.of("target", "filmorate.jsa");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        Path jar = findApplicationJar();
+        StartupTimeComparison comparison = new StartupTimeComparison();
+
+        Map<String, List<Long>> results = new LinkedHashMap<>();
+        results.put("always", comparison.runMode(jar, "always", List.of(), "default", 18091));
+        results.put("versioned", comparison.runMode(jar, "versioned", List.of(), "fast-startup", 18092));
+        if (Files.exists(ARCHIVE)) {
+            results.put("versioned+aot", comparison.runMode(jar, "aot",
+                    List.of("-Dspring.aot.enabled=true"), "fast-startup", 18093));
+            results.put("aot+cds", comparison.runMode(jar, "cds",
+                    List.of("-XX:SharedArchiveFile=" + ARCHIVE, "-Dspring.aot.enabled=true"),
+                    "fast-startup", 18094));
+        } else {
+            System.out.println("Нет " + ARCHIVE + ": режимы AOT и CDS пропущены, соберите с -Pfast-startup");
+        }
+
+        printTable(results);
+        Path report = Path.of("target", "startup-comparison.json");
+        Files.writeString(report, toJson(results));
+        System.out.println("Результат сохранен в " + report.toAbsolutePath());
+    }
+
+    private List<Long> runMode(Path jar, String mode, List<String> jvmArgs, String profile, int port)
+            throws Exception {
+        Path database = Files.createTempDirectory("filmorate-startup-" + mode);
+        List<Long> millis = new ArrayList<>();
+        for (int run = 0; run <= RUNS; run++) {
+            List<String> command = new ArrayList<>();
+            command.add(ProcessHandle.current().info().command().orElse("java"));
+            command.addAll(jvmArgs);
+            command.addAll(List.of("-jar", jar.toString(),
+                    "--server.port=" + port,
+                    "--spring.profiles.active=" + profile,
+                    "--spring.datasource.url=jdbc:h2:file:" + database.resolve("filmorate").toAbsolutePath(),
+                    "--logging.level.root=WARN",
+                    "--logging.level.org.zalando.logbook=WARN"));
+
+            long start = System.nanoTime();
+            Process app = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(Path.of("target", "startup-" + mode + ".log").toFile())
+                    .start();
+            try {
+                awaitFirstResponse("http://localhost:" + port, app);
+                long elapsed = (System.nanoTime() - start) / 1_000_000;
+                // Первый запуск создает базу
+                if (run > 0) {
+                    millis.add(elapsed);
+                }
+            } finally {
+                app.destroy();
+                app.waitFor();
+            }
+        }
+        return millis;
+    }
+
+    private void awaitFirstResponse(String baseUrl, Process app) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/genres"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + Duration.ofMinutes(2).toNanos();
+        while (System.nanoTime() < deadline && app.isAlive()) {
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // приложение еще не запустилось
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("Приложение не запустилось: " + baseUrl);
+    }
+
+    private static Path findApplicationJar() throws IOException {
+        try (var files = Files.list(Path.of("target"))) {
+            return files.filter(path -> path.getFileName().toString().matches("filmorate-.*\\.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Сначала соберите приложение: mvn package"));
+        }
+    }
+
+    private static void printTable(Map<String, List<Long>> results) {
+        System.out.printf("%-15s %10s %10s %10s%n", "Mode", "min, ms", "p50, ms", "max, ms");
+        results.forEach((mode, millis) -> System.out.printf("%-15s %10d %10d %10d%n",
+                mode, min(millis), median(millis), max(millis)));
+    }
+
+    private static String toJson(Map<String, List<Long>> results) {
+        StringBuilder json = new StringBuilder("{\n");
+        Iterator<Map.Entry<String, List<Long>>> modes = results.entrySet().iterator();
+        while (modes.hasNext()) {
+            Map.Entry<String, List<Long>> mode = modes.next();
+            json.append(String.format(Locale.ROOT,
+                    "  \"%s\": {\"minMs\": %d, \"p50Ms\": %d, \"maxMs\": %d, \"runsMs\": %s}%s%n",
+                    mode.getKey(), min(mode.getValue()), median(mode.getValue()), max(mode.getValue()),
+                    mode.getValue(), modes.hasNext() ? "," : ""));
+        }
+        return json.append("}\n").toString();
+    }
+
+    private static long min(List<Long> millis) {
+        return millis.stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    private static long max(List<Long> millis) {
+        return millis.stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    private static long median(List<Long> millis) {
+        if (millis.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return sorted.get((sorted.size() - 1) / 2);
+    }
+}
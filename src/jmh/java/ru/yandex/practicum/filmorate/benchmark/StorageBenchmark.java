@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
+
+// Горячие пути хранилищ и сервисов.
+// Запуск: mvn -Pbenchmark test-compile exec:exec, результат в target/jmh-result.json
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @State(Scope.Thread)
+    public static class Ids {
+
+        private final SplittableRandom random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public List<Film> dbGetAllFilms(SeededStorages storages) {
+        return storages.filmDbStorage.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> memoryGetAllFilms(SeededStorages storages) {
+        return storages.inMemoryFilmStorage.getAllFilms();
+    }
+
+    @Benchmark
+    public List<Film> dbGetMostPopularFilms(SeededStorages storages) {
+        return storages.filmDbStorage.getMostPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> memoryGetMostPopularFilms(SeededStorages storages) {
+        return storages.inMemoryFilmStorage.getMostPopularFilms(10);
+    }
+
+    @Benchmark
+    public Film dbGetFilmById(SeededStorages storages, Ids ids) {
+        return storages.filmDbStorage.getFilmById(storages.randomFilmId(ids.random));
+    }
+
+    @Benchmark
+    public Film memoryGetFilmById(SeededStorages storages, Ids ids) {
+        return storages.inMemoryFilmStorage.getFilmById(storages.randomFilmId(ids.random));
+    }
+
+    // Лайк ставит пользователь без лайков в начальных данных и снимает сразу после добавления:
+    // начальные лайки не стираются, и размер данных не меняется между итерациями
+    @Benchmark
+    public void serviceAddAndRemoveLike(SeededStorages storages, Ids ids) {
+        int filmId = storages.randomFilmId(ids.random);
+        int userId = storages.randomReservedUserId(ids.random);
+        storages.filmService.addLike(filmId, userId);
+        storages.filmService.removeLike(filmId, userId);
+    }
+
+    @Benchmark
+    public void memoryAddAndRemoveLike(SeededStorages storages, Ids ids) {
+        int filmId = storages.randomFilmId(ids.random);
+        int userId = storages.randomReservedUserId(ids.random);
+        storages.inMemoryFilmStorage.addLike(filmId, userId);
+        storages.inMemoryFilmStorage.removeLike(filmId, userId);
+    }
+
+    @Benchmark
+    public List<User> serviceGetFriends(SeededStorages storages, Ids ids) {
+        return storages.userService.getFriends(storages.randomUserId(ids.random));
+    }
+
+    @Benchmark
+    public List<User> memoryGetFriends(SeededStorages storages, Ids ids) {
+        return storages.inMemoryUserStorage.getFriends(storages.randomUserId(ids.random));
+    }
+
+    @Benchmark
+    public List<User> serviceGetCommonFriends(SeededStorages storages, Ids ids) {
+        return storages.userService.getCommonFriends(storages.randomUserId(ids.random),
+                storages.randomUserId(ids.random));
+    }
+
+    @Benchmark
+    public List<User> memoryGetCommonFriends(SeededStorages storages, Ids ids) {
+        return storages.inMemoryUserStorage.getCommonFriends(storages.randomUserId(ids.random),
+                storages.randomUserId(ids.random));
+    }
+
+    @Benchmark
+    public int serviceGetFriendsCount(SeededStorages storages, Ids ids) {
+        return storages.userService.getFriendsCount(storages.randomUserId(ids.random));
+    }
+
+    @Benchmark
+    public List<Film> serviceGetSimilarFilms(SeededStorages storages, Ids ids) {
+        return storages.recommendationService.getSimilarFilms(storages.randomFilmId(ids.random), 10);
+    }
+
+    @Benchmark
+    public List<Film> serviceGetRecommendations(SeededStorages storages, Ids ids) {
+        return storages.recommendationService.getRecommendations(storages.randomUserId(ids.random), 10);
+    }
+
+    @Benchmark
+    public List<Film> serviceSearchFilms(SeededStorages storages, Ids ids) {
+        // Префикс номера фильма: от одного до нескольких десятков совпадений
+        return storages.filmService.searchFilms("опис " + storages.randomFilmId(ids.random) / 10, 0, 20);
+    }
+
+    @Benchmark
+    public List<Film> serviceGetTrendingFilms(SeededStorages storages) {
+        return storages.trendingFilmsService.getTrendingFilms(TrendingFilmsService.Window.WEEK, 10);
+    }
+
+    @Benchmark
+    public List<Film> serviceGetMostPopularFilmsByGenreAndYear(SeededStorages storages, Ids ids) {
+        int filmId = storages.randomFilmId(ids.random);
+        return storages.filmService.getMostPopularFilms(10, filmId % 6 + 1, 1950 + filmId % 68);
+    }
+}
@@ -0,0 +1,234 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Сравнение режимов обработки запросов: платформенные потоки Tomcat и виртуальные потоки.
+// Для каждого режима запускается собранное приложение (target/filmorate-*.jar) с базой в памяти,
+// заполняется данными через API и нагружается одинаковым сценарием.
+// Запуск: mvn -Pbenchmark package -DskipTests exec:exec@load-comparison
+// Параметры (системные свойства): load.clients, load.duration, load.users, load.films.
+public class ThreadModeLoadComparison {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 200);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.duration", 30));
+    private static final int USERS = Integer.getInteger("load.users", 500);
+    private static final int FILMS = Integer.getInteger("load.films", 500);
+    private static final List<String> ENDPOINTS = List.of(
+            "GET /films/{id}", "GET /films/popular", "PUT /films/{id}/like/{userId}",
+            "GET /users/{id}/friends", "GET /users/{id}/friends/common/{otherId}");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        Path jar = findApplicationJar();
+        ThreadModeLoadComparison comparison = new ThreadModeLoadComparison();
+
+        Map<String, Map<String, Stats>> results = new LinkedHashMap<>();
+        results.put("platform", comparison.runMode(jar, "default", 18081));
+        results.put("virtual", comparison.runMode(jar, "virtual-threads", 18082));
+
+        printTable(results);
+        Path report = Path.of("target", "load-comparison.json");
+        Files.writeString(report, toJson(results));
+        System.out.println("Результат сохранен в " + report.toAbsolutePath());
+    }
+
+    private Map<String, Stats> runMode(Path jar, String profile, int port) throws Exception {
+        Process app = new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"),
+                "-jar", jar.toString(),
+                "--server.port=" + port,
+                "--spring.profiles.active=" + profile,
+                "--spring.datasource.url=jdbc:h2:mem:load-" + profile,
+                "--logging.level.root=WARN",
+                "--logging.level.org.zalando.logbook=WARN")
+                .redirectErrorStream(true)
+                .redirectOutput(Path.of("target", "load-" + profile + ".log").toFile())
+                .start();
+        try {
+            String baseUrl = "http://localhost:" + port;
+            awaitReady(baseUrl);
+            seed(baseUrl);
+            return load(baseUrl);
+        } finally {
+            app.destroy();
+            app.waitFor();
+        }
+    }
+
+    private void awaitReady(String baseUrl) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofMinutes(2).toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (send("GET", baseUrl + "/genres", null) == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // приложение еще не запустилось
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Приложение не запустилось: " + baseUrl);
+    }
+
+    private void seed(String baseUrl) throws Exception {
+        StringBuilder users = new StringBuilder("[");
+        for (int i = 1; i <= USERS; i++) {
+            users.append(i > 1 ? "," : "")
+                    .append("{\"email\":\"user").append(i).append("@example.com\",\"login\":\"user")
+                    .append(i).append("\",\"birthday\":\"1990-01-01\"}");
+        }
+        send("POST", baseUrl + "/users/batch", users.append("]").toString());
+
+        StringBuilder films = new StringBuilder("[");
+        for (int i = 1; i <= FILMS; i++) {
+            films.append(i > 1 ? "," : "")
+                    .append("{\"name\":\"Фильм ").append(i)
+                    .append("\",\"description\":\"Описание\",\"releaseDate\":\"2000-01-01\",")
+                    .append("\"duration\":100,\"mpa\":{\"id\":1},\"genres\":[{\"id\":")
+                    .append(i % 6 + 1).append("}]}");
+        }
+        send("POST", baseUrl + "/films/batch", films.append("]").toString());
+
+        for (int userId = 1; userId <= USERS; userId++) {
+            for (int k = 1; k <= 10; k++) {
+                int friendId = (userId + k * 37) % USERS + 1;
+                if (friendId != userId) {
+                    send("PUT", baseUrl + "/users/" + userId + "/friends/" + friendId, null);
+                }
+            }
+        }
+    }
+
+    private Map<String, Stats> load(String baseUrl) throws InterruptedException {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        ENDPOINTS.forEach(endpoint -> stats.put(endpoint, new Stats()));
+        long deadline = System.nanoTime() + DURATION.toNanos();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CLIENTS; c++) {
+                clients.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        int filmId = random.nextInt(FILMS) + 1;
+                        int userId = random.nextInt(USERS) + 1;
+                        int otherId = random.nextInt(USERS) + 1;
+                        String endpoint = ENDPOINTS.get(random.nextInt(ENDPOINTS.size()));
+                        String method = endpoint.startsWith("PUT") ? "PUT" : "GET";
+                        String path = endpoint.substring(endpoint.indexOf(' ') + 1)
+                                .replace("{id}", String.valueOf(endpoint.contains("/films/{id}") ? filmId : userId))
+                                .replace("{userId}", String.valueOf(userId))
+                                .replace("{otherId}", String.valueOf(otherId));
+
+                        long start = System.nanoTime();
+                        boolean ok;
+                        try {
+                            int status = send(method, baseUrl + path, null);
+                            ok = status < 500;
+                        } catch (IOException e) {
+                            ok = false;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        stats.get(endpoint).record(System.nanoTime() - start, ok);
+                    }
+                });
+            }
+        }
+        return stats;
+    }
+
+    private int send(String method, String url, String json) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30));
+        if (json != null) {
+            request.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(json));
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static Path findApplicationJar() throws IOException {
+        try (var files = Files.list(Path.of("target"))) {
+            return files.filter(path -> path.getFileName().toString().matches("filmorate-.*\\.jar"))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Сначала соберите приложение: mvn package"));
+        }
+    }
+
+    private static void printTable(Map<String, Map<String, Stats>> results) {
+        System.out.printf("%-45s %-9s %12s %10s %10s %8s%n",
+                "Endpoint", "Mode", "Req/s", "p50, ms", "p99, ms", "Errors");
+        for (String endpoint : ENDPOINTS) {
+            results.forEach((mode, stats) -> {
+                Stats s = stats.get(endpoint);
+                System.out.printf("%-45s %-9s %12.1f %10.2f %10.2f %8d%n", endpoint, mode,
+                        s.throughput(), s.percentileMillis(0.5), s.percentileMillis(0.99), s.errors.get());
+            });
+        }
+    }
+
+    private static String toJson(Map<String, Map<String, Stats>> results) {
+        StringBuilder json = new StringBuilder("{\n");
+        Iterator<Map.Entry<String, Map<String, Stats>>> modes = results.entrySet().iterator();
+        while (modes.hasNext()) {
+            Map.Entry<String, Map<String, Stats>> mode = modes.next();
+            json.append("  \"").append(mode.getKey()).append("\": {\n");
+            Iterator<Map.Entry<String, Stats>> endpoints = mode.getValue().entrySet().iterator();
+            while (endpoints.hasNext()) {
+                Map.Entry<String, Stats> endpoint = endpoints.next();
+                Stats s = endpoint.getValue();
+                json.append(String.format(Locale.ROOT,
+                        "    \"%s\": {\"throughput\": %.1f, \"p50Ms\": %.2f, \"p99Ms\": %.2f, \"errors\": %d}%s%n",
+                        endpoint.getKey(), s.throughput(), s.percentileMillis(0.5),
+                        s.percentileMillis(0.99), s.errors.get(), endpoints.hasNext() ? "," : ""));
+            }
+            json.append("  }").append(modes.hasNext() ? "," : "").append('\n');
+        }
+        return json.append("}\n").toString();
+    }
+
+    private static class Stats {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        synchronized void record(long nanos, boolean ok) {
+            latencies.add(nanos);
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+
+        synchronized double throughput() {
+            return latencies.size() / (double) DURATION.toSeconds();
+        }
+
+        synchronized double percentileMillis(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+            return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+
+// Кэши сущностей перед хранилищами в базе данных
+@Configuration
+@Profile("!in-memory")
+public class CacheConfig {
+
+    @Bean
+    public EntityCache<Film> filmCache(
+            @Value("${filmorate.cache.films.max-size:10000}") int maxSize,
+            @Value("${filmorate.cache.films.ttl:5m}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        return new EntityCache<>("films", maxSize, ttl, CacheConfig::copyFilm, meterRegistry);
+    }
+
+    @Bean
+    public EntityCache<User> userCache(
+            @Value("${filmorate.cache.users.max-size:10000}") int maxSize,
+            @Value("${filmorate.cache.users.ttl:5m}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        return new EntityCache<>("users", maxSize, ttl, CacheConfig::copyUser, meterRegistry);
+    }
+
+    public static Film copyFilm(Film film) {
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(),
+                film.getGenres() == null ? null : new ArrayList<>(film.getGenres().stream()
+                        .map(genre -> new Genre(genre.getId(), genre.getName()))
+                        .toList()),
+                film.getMpa() == null ? null : new MpaRating(film.getMpa().getId(), film.getMpa().getName()));
+    }
+
+    public static User copyUser(User user) {
+        return new User(user.getId(), user.getEmail(), user.getLogin(), user.getName(), user.getBirthday());
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.zalando.logbook.HttpLogWriter;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.core.DefaultHttpLogWriter;
+import ru.yandex.practicum.filmorate.logging.AsyncHttpLogWriter;
+import ru.yandex.practicum.filmorate.logging.SamplingRequestCondition;
+
+@Configuration
+public class LoggingConfig {
+
+    // Заменяет условие Logbook из автоконфигурации: доли логирования по шаблонам путей
+    // filmorate.http-log.sampling.rates[<шаблон>] и filmorate.http-log.sampling.default-rate
+    @Bean
+    public Predicate<HttpRequest> requestCondition(Environment environment,
+            @Value("${filmorate.http-log.sampling.default-rate:1.0}") double defaultRate) {
+        Map<String, Double> rates = Binder.get(environment)
+                .bind("filmorate.http-log.sampling.rates", Bindable.mapOf(String.class, Double.class))
+                .orElse(Map.of());
+        return new SamplingRequestCondition(rates, defaultRate);
+    }
+
+    // Запись в лог выполняется фоновым потоком, поток запроса только ставит запись в буфер
+    @Bean
+    public HttpLogWriter httpLogWriter(MeterRegistry meterRegistry,
+            @Value("${filmorate.http-log.queue-capacity:4096}") int capacity) {
+        return new AsyncHttpLogWriter(new DefaultHttpLogWriter(), capacity, meterRegistry);
+    }
+}
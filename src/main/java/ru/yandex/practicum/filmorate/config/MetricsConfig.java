@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.metrics.SqlStatementsPerRequestFilter;
+import ru.yandex.practicum.filmorate.metrics.StatementCountingJdbcTemplate;
+
+@Configuration
+public class MetricsConfig {
+
+    // Поддержка @Timed на хранилищах
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    // Заменяет JdbcTemplate из автоконфигурации, сохраняя настройки spring.jdbc.template.*
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties) {
+        JdbcTemplate jdbcTemplate = new StatementCountingJdbcTemplate(dataSource);
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlStatementsPerRequestFilter> sqlStatementsPerRequestFilter(
+            MeterRegistry meterRegistry) {
+        FilterRegistrationBean<SqlStatementsPerRequestFilter> registration =
+                new FilterRegistrationBean<>(new SqlStatementsPerRequestFilter(meterRegistry));
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.config;
+
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.yandex.practicum.filmorate.datasource.VersionedSchemaInitializer;
+
+// Инициализация базы вместо стандартной из spring.sql.init. Режим выбирается свойством
+// filmorate.sql.init.versioned во время запуска, а не условием на бин: при AOT-сборке условия
+// вычисляются один раз, и одна сборка должна поддерживать оба режима.
+// Свойства spring.sql.init подключаются здесь: при mode=never и enabled=false стандартная
+// автоконфигурация отключается целиком вместе с ними.
+@Configuration
+@EnableConfigurationProperties(SqlInitializationProperties.class)
+public class SchemaInitConfig {
+
+    @Bean
+    public VersionedSchemaInitializer dataSourceScriptDatabaseInitializer(DataSource dataSource,
+            SqlInitializationProperties properties,
+            @Value("${spring.sql.init.enabled:true}") boolean enabled,
+            @Value("${filmorate.sql.init.versioned:false}") boolean versioned) {
+        if (!enabled) {
+            properties = new SqlInitializationProperties();
+            properties.setMode(DatabaseInitializationMode.NEVER);
+        }
+        return new VersionedSchemaInitializer(dataSource, properties, versioned);
+    }
+}
@@ -1,14 +1,32 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmSearchService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
 import lombok.extern.slf4j.Slf4j;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import java.util.List;
 
 @Slf4j
@@ -17,11 +35,24 @@ import java.util.List;
 @Validated
 public class FilmController {
 
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_QUERY_LENGTH = 200;
+
     private final FilmService filmService;
+    private final RecommendationService recommendationService;
+    private final TrendingFilmsService trendingFilmsService;
+    private final ContentVersions contentVersions;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, RecommendationService recommendationService,
+            TrendingFilmsService trendingFilmsService, ContentVersions contentVersions,
+            ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.recommendationService = recommendationService;
+        this.trendingFilmsService = trendingFilmsService;
+        this.contentVersions = contentVersions;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -31,6 +62,15 @@ public class FilmController {
         return ResponseEntity.status(201).body(addedFilm);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResult>> addFilms(
+            @RequestBody @NotNull @Size(max = MAX_BATCH_SIZE) List<Film> films) {
+        List<BatchItemResult> results = filmService.addFilms(films);
+        log.info("Пакетная загрузка фильмов: сохранено {} из {}.",
+                results.stream().filter(result -> result.getError() == null).count(), films.size());
+        return ResponseEntity.ok(results);
+    }
+
     @PutMapping
     public ResponseEntity<Film> updateFilm(@Valid @RequestBody Film film) {
         Film updatedFilm = filmService.updateFilm(film);
@@ -39,15 +79,41 @@ public class FilmController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Film> getFilmById(@PathVariable @Positive int id) {
-        Film film = filmService.getFilmById(id);
-        return ResponseEntity.ok(film);
+    public ResponseEntity<Film> getFilmById(@PathVariable @Positive int id, WebRequest request) {
+        // Версия берется до чтения данных (см. ContentVersions). Версия известна только этому
+        // процессу, поэтому данные читаются с основной базы: с реплики под новым ETag мог бы уйти
+        // еще не реплицированный фильм
+        String etag = contentVersions.filmEtag(id);
+        if (notModified(request, etag)) {
+            return null;
+        }
+        Film film = ReplicaRoutingDataSource.onPrimary(() -> filmService.getFilmById(id));
+        return ResponseEntity.ok().eTag(etag).body(film);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Film>> getAllFilms(
+            @RequestParam(required = false) @Positive @Max(PageCursor.MAX_PAGE_SIZE) Integer limit,
+            @RequestParam(required = false) String after) {
+        if (limit == null && after == null) {
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+
+        int pageSize = limit != null ? limit : PageCursor.DEFAULT_PAGE_SIZE;
+        List<Film> films = filmService.getFilmsPage(PageCursor.decode(after), pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (films.size() == pageSize) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(films.getLast().getId()));
+        }
+        return response.body(films);
     }
 
-    @GetMapping
-    public ResponseEntity<List<Film>> getAllFilms() {
-        List<Film> films = filmService.getAllFilms();
-        return ResponseEntity.ok(films);
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        StreamingResponseBody body = NdjsonStreams.<Film>stream(objectMapper, filmService::forEachFilm);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -55,7 +121,7 @@ public class FilmController {
             @PathVariable @Positive int id,
             @PathVariable @Positive int userId) {
         filmService.addLike(id, userId);
-        log.info("Пользователь с ID {} поставил лайк фильму с ID {}", userId, id);
+        log.debug("Пользователь с ID {} поставил лайк фильму с ID {}", userId, id);
         return ResponseEntity.ok().build();
     }
 
@@ -64,14 +130,56 @@ public class FilmController {
             @PathVariable @Positive int id,
             @PathVariable @Positive int userId) {
         filmService.removeLike(id, userId);
-        log.info("Пользователь с ID {} удалил лайк у фильма с ID {}", userId, id);
+        log.debug("Пользователь с ID {} удалил лайк у фильма с ID {}", userId, id);
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<List<Film>> searchFilms(
+            @RequestParam @NotBlank @Size(max = MAX_QUERY_LENGTH) String q,
+            @RequestParam(defaultValue = "0") @PositiveOrZero @Max(FilmSearchService.MAX_OFFSET) int offset,
+            @RequestParam(defaultValue = "20") @Positive @Max(FilmSearchService.MAX_LIMIT) int limit) {
+        return ResponseEntity.ok(filmService.searchFilms(q, offset, limit));
+    }
+
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<Film>> getSimilarFilms(
+            @PathVariable @Positive int id,
+            @RequestParam(defaultValue = "10") @Positive @Max(RecommendationService.MAX_COUNT) int count) {
+        return ResponseEntity.ok(recommendationService.getSimilarFilms(id, count));
+    }
+
+    // Версию популярных фильмов увеличивают хранилище после фиксации лайка и PopularFilmsService
+    // после обновления рейтингов по жанрам и годам: ETag не опережает ни один из ответов.
+    // Как и для фильма по id, данные читаются с основной базы
     @GetMapping("/popular")
     public ResponseEntity<List<Film>> getMostPopularFilms(
-            @RequestParam(defaultValue = "10") @Positive int count) {
-        List<Film> popularFilms = filmService.getMostPopularFilms(count);
-        return ResponseEntity.ok(popularFilms);
+            @RequestParam(defaultValue = "10") @Positive int count,
+            @RequestParam(required = false) @Positive Integer genreId,
+            @RequestParam(required = false) @Min(1895) @Max(9999) Integer year,
+            WebRequest request) {
+        String etag = contentVersions.popularFilmsEtag();
+        if (notModified(request, etag)) {
+            return null;
+        }
+        List<Film> popularFilms = ReplicaRoutingDataSource.onPrimary(() ->
+                filmService.getMostPopularFilms(count, genreId, year));
+        return ResponseEntity.ok().eTag(etag).body(popularFilms);
+    }
+
+    @GetMapping("/trending")
+    public ResponseEntity<List<Film>> getTrendingFilms(
+            @RequestParam(defaultValue = "24h") @Pattern(regexp = "24h|7d") String window,
+            @RequestParam(defaultValue = "10") @Positive @Max(TrendingFilmsService.MAX_COUNT) int count) {
+        return ResponseEntity.ok(trendingFilmsService.getTrendingFilms(
+                TrendingFilmsService.Window.of(window), count));
+    }
+
+    // Ответ 304 без чтения данных, если клиент прислал текущий ETag. checkNotModified вызывается
+    // только при совпадении: иначе он записал бы ETag в ответ до чтения, и его получил бы и ответ
+    // с ошибкой (404 для еще не созданного фильма). Успешному ответу ETag добавляется отдельно
+    private static boolean notModified(WebRequest request, String etag) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        return ifNoneMatch != null && ifNoneMatch.contains(etag) && request.checkNotModified(etag);
     }
 }
@@ -2,28 +2,35 @@ package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 import java.util.List;
 
 @RestController
 @RequestMapping("/genres")
 public class GenreController {
 
-    private final FilmDbStorage filmDbStorage;
+    private final ReferenceDataCache referenceData;
+    private final ContentVersions contentVersions;
 
     @Autowired
-    public GenreController(FilmDbStorage filmDbStorage) {
-        this.filmDbStorage = filmDbStorage;
+    public GenreController(ReferenceDataCache referenceData, ContentVersions contentVersions) {
+        this.referenceData = referenceData;
+        this.contentVersions = contentVersions;
     }
 
     @GetMapping
-    public List<Genre> getAllGenres() {
-        return filmDbStorage.getAllGenres();
+    public List<Genre> getAllGenres(WebRequest request) {
+        if (request.checkNotModified(contentVersions.genresEtag())) {
+            return null;
+        }
+        return referenceData.getAllGenres();
     }
 
     @GetMapping("/{id}")
     public Genre getGenreById(@PathVariable int id) {
-        return filmDbStorage.getGenreById(id);
+        return referenceData.getGenreById(id);
     }
 }
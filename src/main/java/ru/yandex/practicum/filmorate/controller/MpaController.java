@@ -2,28 +2,35 @@ package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MpaRating;
-import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 import java.util.List;
 
 @RestController
 @RequestMapping("/mpa")
 public class MpaController {
 
-    private final FilmDbStorage filmDbStorage;
+    private final ReferenceDataCache referenceData;
+    private final ContentVersions contentVersions;
 
     @Autowired
-    public MpaController(FilmDbStorage filmDbStorage) {
-        this.filmDbStorage = filmDbStorage;
+    public MpaController(ReferenceDataCache referenceData, ContentVersions contentVersions) {
+        this.referenceData = referenceData;
+        this.contentVersions = contentVersions;
     }
 
     @GetMapping
-    public List<MpaRating> getAllMpaRatings() {
-        return filmDbStorage.getAllMpaRatings();
+    public List<MpaRating> getAllMpaRatings(WebRequest request) {
+        if (request.checkNotModified(contentVersions.mpaEtag())) {
+            return null;
+        }
+        return referenceData.getAllMpaRatings();
     }
 
     @GetMapping("/{id}")
     public MpaRating getMpaById(@PathVariable int id) {
-        return filmDbStorage.getMpaById(id);
+        return referenceData.getMpaById(id);
     }
 }
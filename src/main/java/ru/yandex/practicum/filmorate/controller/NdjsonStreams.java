@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+// Выгрузка в формате NDJSON: каждый объект пишется в ответ отдельной строкой сразу после чтения
+public final class NdjsonStreams {
+
+    private NdjsonStreams() {
+    }
+
+    public static <T> StreamingResponseBody stream(ObjectMapper objectMapper,
+            Consumer<Consumer<T>> source) {
+        ObjectWriter writer = objectMapper.writer();
+        return out -> {
+            source.accept(value -> {
+                try {
+                    out.write(writer.writeValueAsBytes(value));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+    }
+}
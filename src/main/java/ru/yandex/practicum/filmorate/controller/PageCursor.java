@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+// Непрозрачный курсор постраничной выборки: кодирует ID последнего элемента страницы
+public final class PageCursor {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String PREFIX = "id:";
+
+    private PageCursor() {
+    }
+
+    public static String encode(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Пустой курсор означает начало выборки
+    public static int decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith(PREFIX)) {
+                int lastId = Integer.parseInt(value.substring(PREFIX.length()));
+                if (lastId >= 0) {
+                    return lastId;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // обрабатывается ниже
+        }
+        throw new ValidationException("Некорректный курсор: " + cursor);
+    }
+}
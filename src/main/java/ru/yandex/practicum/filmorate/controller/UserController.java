@@ -1,14 +1,23 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import lombok.extern.slf4j.Slf4j;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import java.util.List;
 
 @Slf4j
@@ -17,11 +26,18 @@ import java.util.List;
 @Validated
 public class UserController {
 
+    private static final int MAX_BATCH_SIZE = 10_000;
+
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, RecommendationService recommendationService,
+            ObjectMapper objectMapper) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -34,6 +50,20 @@ public class UserController {
         return ResponseEntity.status(201).body(createdUser);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResult>> createUsers(
+            @RequestBody @NotNull @Size(max = MAX_BATCH_SIZE) List<User> users) {
+        for (User user : users) {
+            if (user != null && (user.getName() == null || user.getName().isBlank())) {
+                user.setName(user.getLogin());
+            }
+        }
+        List<BatchItemResult> results = userService.createUsers(users);
+        log.info("Пакетная загрузка пользователей: сохранено {} из {}.",
+                results.stream().filter(result -> result.getError() == null).count(), users.size());
+        return ResponseEntity.ok(results);
+    }
+
     @PutMapping
     public ResponseEntity<User> updateUser(@Valid @RequestBody User user) {
         if (user.getName() == null || user.getName().isBlank()) {
@@ -50,10 +80,29 @@ public class UserController {
         return ResponseEntity.ok(user);
     }
 
-    @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<User>> getAllUsers(
+            @RequestParam(required = false) @Positive @Max(PageCursor.MAX_PAGE_SIZE) Integer limit,
+            @RequestParam(required = false) String after) {
+        if (limit == null && after == null) {
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+
+        int pageSize = limit != null ? limit : PageCursor.DEFAULT_PAGE_SIZE;
+        List<User> users = userService.getUsersPage(PageCursor.decode(after), pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (users.size() == pageSize) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(users.getLast().getId()));
+        }
+        return response.body(users);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = NdjsonStreams.<User>stream(objectMapper, userService::forEachUser);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -61,7 +110,7 @@ public class UserController {
             @PathVariable @Positive int id,
             @PathVariable @Positive int friendId) {
         userService.addFriend(id, friendId);
-        log.info("Пользователь с ID {} добавил в друзья пользователя с ID {}", id, friendId);
+        log.debug("Пользователь с ID {} добавил в друзья пользователя с ID {}", id, friendId);
         return ResponseEntity.ok().build();
     }
 
@@ -70,7 +119,7 @@ public class UserController {
             @PathVariable @Positive int id,
             @PathVariable @Positive int friendId) {
         userService.removeFriend(id, friendId);
-        log.info("Пользователь с ID {} удалил из друзей пользователя с ID {}", id, friendId);
+        log.debug("Пользователь с ID {} удалил из друзей пользователя с ID {}", id, friendId);
         return ResponseEntity.noContent().build();
     }
 
@@ -80,6 +129,11 @@ public class UserController {
         return ResponseEntity.ok(friends);
     }
 
+    @GetMapping("/{id}/friends/count")
+    public ResponseEntity<Integer> getFriendsCount(@PathVariable @Positive int id) {
+        return ResponseEntity.ok(userService.getFriendsCount(id));
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     public ResponseEntity<List<User>> getCommonFriends(
             @PathVariable @Positive int id,
@@ -87,4 +141,11 @@ public class UserController {
         List<User> commonFriends = userService.getCommonFriends(id, otherId);
         return ResponseEntity.ok(commonFriends);
     }
+
+    @GetMapping("/{id}/recommendations")
+    public ResponseEntity<List<Film>> getRecommendations(
+            @PathVariable @Positive int id,
+            @RequestParam(defaultValue = "10") @Positive @Max(RecommendationService.MAX_COUNT) int count) {
+        return ResponseEntity.ok(recommendationService.getRecommendations(id, count));
+    }
 }
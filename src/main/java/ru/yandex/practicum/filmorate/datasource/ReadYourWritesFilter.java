@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+// Чтение своих записей при чтении с реплики. Изменяющий запрос выставляет клиенту cookie со временем
+// записи; пока не прошло допустимое отставание реплики, запросы клиента читают основную базу
+// и видят его изменения. Запросы других клиентов продолжают читать реплику.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "filmorate-last-write";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final long pinMillis;
+
+    public ReadYourWritesFilter(Duration pinDuration) {
+        this.pinMillis = pinDuration.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(now));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.ceilDiv(pinMillis, 1000));
+            response.addCookie(cookie);
+        }
+
+        boolean pinned = write || wroteRecently(request, now);
+        if (pinned) {
+            ReplicaRoutingDataSource.pinToPrimary();
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (pinned) {
+                ReplicaRoutingDataSource.unpin();
+            }
+        }
+    }
+
+    private boolean wroteRecently(HttpServletRequest request, long now) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return now - Long.parseLong(cookie.getValue()) < pinMillis;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+// Отставание реплики: основная база периодически записывает отметку времени в replica_heartbeat,
+// отставание - разница между текущим временем и отметкой, дошедшей до реплики.
+// Точность - интервал записи отметок, поэтому допустимое отставание должно быть больше него.
+// Пока отставание неизвестно или больше допустимого, чтение идет с основной базы.
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration maxLag;
+
+    private volatile boolean replicaUsable;
+    // Отставание в миллисекундах; -1, если реплика недоступна
+    private volatile long lagMillis = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag,
+            MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLag = maxLag;
+        Gauge.builder("filmorate.datasource.replica.lag", this, monitor -> monitor.lagMillis / 1000.0)
+                .description("Отставание реплики в секундах, -1 - реплика недоступна")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.datasource.replica.heartbeat-interval-ms:1000}")
+    public void check() {
+        Instant now = Instant.now();
+        long lag;
+        try {
+            primary.update("MERGE INTO replica_heartbeat (id, beat_at) KEY (id) VALUES (1, ?)",
+                    now.atOffset(ZoneOffset.UTC));
+            OffsetDateTime beat = replica.queryForObject(
+                    "SELECT MAX(beat_at) FROM replica_heartbeat", OffsetDateTime.class);
+            lag = beat == null ? -1 : Math.max(Duration.between(beat.toInstant(), now).toMillis(), 0);
+        } catch (DataAccessException e) {
+            log.debug("Не удалось измерить отставание реплики", e);
+            lag = -1;
+        }
+
+        boolean usable = lag >= 0 && lag <= maxLag.toMillis();
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("Чтение переключено на реплику, отставание {} мс", lag);
+            } else {
+                log.warn("Чтение переключено на основную базу: отставание реплики {} мс, допустимо {}",
+                        lag, maxLag);
+            }
+        }
+        lagMillis = lag;
+        replicaUsable = usable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import java.util.Map;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Выбор базы для соединения: транзакции только для чтения (@Transactional(readOnly = true)) идут
+// на реплику, все остальное - на основную базу. Реплика не используется, пока ее отставание больше
+// допустимого или пока поток закреплен за основной базой после собственных записей клиента.
+// Решение принимается при первом запросе транзакции, поэтому источник оборачивается
+// в LazyConnectionDataSourceProxy: иначе соединение берется до установки признака readOnly.
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // Чтение в текущем потоке только с основной базы (до вызова unpin)
+    public static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+
+    // Выполнение action с чтением только с основной базы. Нужно, когда результат сопоставляется
+    // с состоянием в памяти процесса: ETag из ContentVersions, изменения, накопленные во время
+    // перестроения индексов. Закрепление, сделанное до вызова, сохраняется.
+    public static <T> T onPrimary(Supplier<T> action) {
+        boolean pinned = PINNED_TO_PRIMARY.get() != null;
+        pinToPrimary();
+        try {
+            return action.get();
+        } finally {
+            if (!pinned) {
+                unpin();
+            }
+        }
+    }
+
+    public static void onPrimary(Runnable action) {
+        onPrimary(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && PINNED_TO_PRIMARY.get() == null
+                && lagMonitor.isReplicaUsable()) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+
+    enum Target {
+        PRIMARY,
+        REPLICA
+    }
+}
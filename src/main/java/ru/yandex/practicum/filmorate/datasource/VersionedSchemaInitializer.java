@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.datasource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Инициализация схемы и справочников (spring.sql.init.*), пропускающая скрипты, если база уже
+// создана ими же. Версия - SHA-256 содержимого скриптов, хранится в таблице schema_version и
+// записывается только после успешного выполнения, так что прерванная инициализация повторится.
+// При versioned = false скрипты выполняются при каждом запуске, как в стандартной инициализации.
+@Slf4j
+public class VersionedSchemaInitializer extends SqlDataSourceScriptDatabaseInitializer {
+
+    private static final List<String> DEFAULT_SCHEMA_LOCATIONS = List.of("classpath*:schema.sql");
+    private static final List<String> DEFAULT_DATA_LOCATIONS = List.of("classpath*:data.sql");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlInitializationProperties properties;
+    private final boolean versioned;
+
+    public VersionedSchemaInitializer(DataSource dataSource, SqlInitializationProperties properties,
+            boolean versioned) {
+        super(dataSource, properties);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.properties = properties;
+        this.versioned = versioned;
+    }
+
+    @Override
+    public boolean initializeDatabase() {
+        // Без выполнения скриптов (режим never или embedded для внешней базы) база не трогается
+        if (!versioned || !scriptsEnabled()) {
+            return super.initializeDatabase();
+        }
+
+        String version = scriptsVersion();
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                + "id TINYINT PRIMARY KEY, "
+                + "version VARCHAR(64) NOT NULL, "
+                + "applied_at TIMESTAMP WITH TIME ZONE NOT NULL)");
+        List<String> applied = jdbcTemplate.queryForList("SELECT version FROM schema_version WHERE id = 1",
+                String.class);
+        if (applied.contains(version)) {
+            log.info("Схема базы данных актуальна (версия {}), скрипты инициализации пропущены", version);
+            return false;
+        }
+
+        // Версия записывается только после выполнения скриптов, иначе они не выполнятся и позже
+        boolean initialized = super.initializeDatabase();
+        if (initialized) {
+            jdbcTemplate.update("MERGE INTO schema_version (id, version, applied_at) KEY (id) "
+                    + "VALUES (1, ?, CURRENT_TIMESTAMP)", version);
+            log.info("Схема базы данных обновлена до версии {}", version);
+        }
+        return initialized;
+    }
+
+    private boolean scriptsEnabled() {
+        return switch (properties.getMode()) {
+            case NEVER -> false;
+            case EMBEDDED -> isEmbeddedDatabase();
+            case ALWAYS -> true;
+        };
+    }
+
+    // Хэш скриптов схемы и данных в порядке выполнения
+    private String scriptsVersion() {
+        List<String> locations = new ArrayList<>();
+        locations.addAll(properties.getSchemaLocations() != null
+                ? properties.getSchemaLocations() : DEFAULT_SCHEMA_LOCATIONS);
+        locations.addAll(properties.getDataLocations() != null
+                ? properties.getDataLocations() : DEFAULT_DATA_LOCATIONS);
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String location : locations) {
+                for (Resource resource : resolver.getResources(location.replaceFirst("^optional:", ""))) {
+                    if (!resource.exists()) {
+                        continue;
+                    }
+                    try (InputStream in = resource.getInputStream()) {
+                        digest.update(in.readAllBytes());
+                    }
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать скрипты инициализации", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
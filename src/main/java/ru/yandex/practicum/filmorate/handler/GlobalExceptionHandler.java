@@ -5,6 +5,10 @@ import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.exception.*;
 import ru.yandex.practicum.filmorate.model.ErrorResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.core.NestedRuntimeException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -60,6 +64,23 @@ public class GlobalExceptionHandler {
         return new ErrorResponse(errorMessage);
     }
 
+    // Нарушение ограничения, не сводящееся к отсутствию объекта: дубликат и т.п.
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ErrorResponse handleDataIntegrityViolationException(final DataIntegrityViolationException e) {
+        log.warn("Нарушено ограничение целостности: {}", e.getMostSpecificCause().getMessage());
+        return new ErrorResponse("Запрос противоречит сохраненным данным.");
+    }
+
+    // Соединение не получено за connection-timeout. В транзакционных методах ожидание происходит
+    // при открытии транзакции, и та же ошибка приходит как CannotCreateTransactionException
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleCannotGetJdbcConnectionException(final NestedRuntimeException e) {
+        log.warn("Нет свободного соединения с базой данных: {}", e.getMessage());
+        return new ErrorResponse("Сервис перегружен, повторите запрос позже.");
+    }
+
     @ExceptionHandler(Throwable.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleThrowable(final Throwable e) {
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpLogWriter;
+import org.zalando.logbook.Precorrelation;
+
+// Асинхронная запись HTTP-обменов Logbook.
+// Поток запроса только кладет готовую запись в ограниченный кольцевой буфер и не блокируется:
+// если буфер заполнен, запись отбрасывается и учитывается в метрике filmorate.http.log.dropped.
+// Фоновый поток пачками передает записи исходному writer'у.
+@Slf4j
+public class AsyncHttpLogWriter implements HttpLogWriter, AutoCloseable {
+
+    private static final int DRAIN_BATCH_SIZE = 256;
+
+    private final HttpLogWriter delegate;
+    private final BlockingQueue<Entry> queue;
+    private final Counter droppedCounter;
+    private final Counter writtenCounter;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public AsyncHttpLogWriter(HttpLogWriter delegate, int capacity, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.droppedCounter = Counter.builder("filmorate.http.log.dropped")
+                .description("HTTP-обмены, не записанные в лог из-за переполнения буфера")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("filmorate.http.log.written")
+                .description("HTTP-обмены, записанные в лог")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.http.log.queue.depth", queue, BlockingQueue::size)
+                .description("Записей HTTP-лога в буфере")
+                .register(meterRegistry);
+
+        this.worker = new Thread(this::run, "http-log-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // Формирование записей имеет смысл, только если исходный writer включен
+    @Override
+    public boolean isActive() {
+        return running && delegate.isActive();
+    }
+
+    @Override
+    public void write(Precorrelation precorrelation, String request) {
+        enqueue(new Entry(precorrelation, null, request));
+    }
+
+    @Override
+    public void write(Correlation correlation, String response) {
+        enqueue(new Entry(null, correlation, response));
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    // Остановка фонового потока с записью всего, что осталось в буфере
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(this::writeEntry);
+    }
+
+    private void enqueue(Entry entry) {
+        if (!running || !queue.offer(entry)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(DRAIN_BATCH_SIZE);
+        while (running) {
+            try {
+                Entry first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, DRAIN_BATCH_SIZE - 1);
+                batch.forEach(this::writeEntry);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeEntry(Entry entry) {
+        try {
+            if (entry.correlation() != null) {
+                delegate.write(entry.correlation(), entry.message());
+            } else {
+                delegate.write(entry.precorrelation(), entry.message());
+            }
+            writtenCounter.increment();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось записать HTTP-обмен в лог: {}", e.getMessage());
+        }
+    }
+
+    // Запись запроса (precorrelation) или ответа (correlation)
+    private record Entry(Precorrelation precorrelation, Correlation correlation, String message) {
+    }
+}
@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import org.springframework.util.AntPathMatcher;
+import org.zalando.logbook.HttpRequest;
+
+// Выборочное логирование HTTP-обменов: для каждого шаблона пути задается доля
+// логируемых запросов (0.0 - не логировать, 1.0 - логировать все).
+// Применяется первый подходящий шаблон в порядке объявления, иначе - доля по умолчанию.
+// Невыбранные запросы Logbook не обрабатывает вовсе, в том числе не буферизует тела.
+public class SamplingRequestCondition implements Predicate<HttpRequest> {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, Double> rates;
+    private final double defaultRate;
+
+    public SamplingRequestCondition(Map<String, Double> rates, double defaultRate) {
+        this.rates = new LinkedHashMap<>(rates);
+        this.defaultRate = defaultRate;
+    }
+
+    @Override
+    public boolean test(HttpRequest request) {
+        double rate = rateFor(request.getPath());
+        if (rate >= 1.0) {
+            return true;
+        }
+        return rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    public double rateFor(String path) {
+        for (Map.Entry<String, Double> entry : rates.entrySet()) {
+            if (pathMatcher.match(entry.getKey(), path)) {
+                return entry.getValue();
+            }
+        }
+        return defaultRate;
+    }
+}
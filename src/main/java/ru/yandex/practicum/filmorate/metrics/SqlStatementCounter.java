@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+// Счетчик SQL-запросов, выполненных в рамках текущего HTTP-запроса (в потоке его обработки)
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<int[]> COUNTER = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static void start() {
+        COUNTER.set(new int[1]);
+    }
+
+    public static void increment() {
+        int[] counter = COUNTER.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+    }
+
+    // Завершение подсчета, возвращает количество запросов
+    public static int stop() {
+        int[] counter = COUNTER.get();
+        COUNTER.remove();
+        return counter != null ? counter[0] : 0;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// JdbcTemplate, сообщающий о каждом выполненном запросе в SqlStatementCounter
+public class StatementCountingJdbcTemplate extends JdbcTemplate {
+
+    public StatementCountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        SqlStatementCounter.increment();
+        super.applyStatementSettings(stmt);
+    }
+}
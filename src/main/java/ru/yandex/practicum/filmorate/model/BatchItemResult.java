@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Результат обработки одного элемента пакетного запроса
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItemResult {
+
+    private int index;
+    private Integer id;
+    private String error;
+
+    public static BatchItemResult success(int index, int id) {
+        return new BatchItemResult(index, id, null);
+    }
+
+    public static BatchItemResult failure(int index, String error) {
+        return new BatchItemResult(index, null, error);
+    }
+}
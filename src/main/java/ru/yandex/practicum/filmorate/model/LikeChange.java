@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.model;
+
+// Изменение лайка: added = true для добавления, false для удаления
+public record LikeChange(int filmId, int userId, boolean added) {
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.validation.ConstraintViolation;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+
+// Пакетный импорт: проверка всех элементов, вставка порциями, ошибки по каждому элементу.
+// Если порция не сохранилась целиком, ее элементы сохраняются по одному, чтобы найти виновника.
+@Slf4j
+final class BatchImporter {
+
+    static final int CHUNK_SIZE = 500;
+
+    private BatchImporter() {
+    }
+
+    static <T> List<BatchItemResult> importAll(List<T> items,
+            Function<T, String> validator,
+            Consumer<List<T>> insertChunk,
+            Consumer<T> insertOne,
+            ToIntFunction<T> idOf) {
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        List<Integer> validIndexes = new ArrayList<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            String error = validator.apply(items.get(i));
+            if (error != null) {
+                results[i] = BatchItemResult.failure(i, error);
+            } else {
+                validIndexes.add(i);
+            }
+        }
+
+        for (int from = 0; from < validIndexes.size(); from += CHUNK_SIZE) {
+            List<Integer> chunkIndexes = validIndexes.subList(from,
+                    Math.min(from + CHUNK_SIZE, validIndexes.size()));
+            List<T> chunk = chunkIndexes.stream().map(items::get).toList();
+
+            try {
+                insertChunk.accept(chunk);
+                for (int index : chunkIndexes) {
+                    results[index] = BatchItemResult.success(index, idOf.applyAsInt(items.get(index)));
+                }
+            } catch (DataAccessException e) {
+                log.warn("Порция из {} элементов не сохранена, сохранение по одному: {}",
+                        chunk.size(), e.getMostSpecificCause().getMessage());
+                for (int index : chunkIndexes) {
+                    results[index] = insertSingle(index, items.get(index), insertOne, idOf);
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    static <T> String describeViolations(Set<ConstraintViolation<T>> violations) {
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> String.format("Поле '%s': %s", violation.getPropertyPath(),
+                        violation.getMessage()))
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static <T> BatchItemResult insertSingle(int index, T item, Consumer<T> insertOne,
+            ToIntFunction<T> idOf) {
+        try {
+            insertOne.accept(item);
+            return BatchItemResult.success(index, idOf.applyAsInt(item));
+        } catch (DuplicateKeyException e) {
+            return BatchItemResult.failure(index, "Объект с такими данными уже существует");
+        } catch (DataAccessException e) {
+            log.error("Ошибка сохранения элемента {} пакета: {}", index,
+                    e.getMostSpecificCause().getMessage());
+            return BatchItemResult.failure(index, "Не удалось сохранить объект");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.IntIntHashMap;
+
+// Полнотекстовый поиск фильмов по названию и описанию.
+// Инвертированный индекс: термин -> (ID фильма -> вес), где вес - число вхождений термина
+// в названии * NAME_WEIGHT плюс в описании. Словарь отсортирован, поэтому каждое слово запроса
+// ищется как префикс (одинаково для кириллицы и латиницы). Фильм должен содержать все слова
+// запроса; оценка - сумма по словам запроса вес * idf, точное совпадение слова весит больше.
+@Slf4j
+@Service
+public class FilmSearchService {
+
+    public static final int MAX_LIMIT = 100;
+    // Глубже по результатам пролистывать незачем: запрос стоит уточнить
+    public static final int MAX_OFFSET = 10_000;
+    private static final int NAME_WEIGHT = 3;
+    private static final int EXACT_MATCH_BOOST = 2;
+    // Ограничение числа терминов, в которые раскрывается один короткий префикс
+    private static final int MAX_PREFIX_TERMS = 1000;
+
+    private final FilmStorage filmStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, IntIntHashMap> postings = new TreeMap<>();
+    private final Map<Integer, String[]> filmTerms = new HashMap<>();
+
+    @Autowired
+    public FilmSearchService(FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    // Построение индекса по всем фильмам хранилища
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            filmTerms.clear();
+            ReplicaRoutingDataSource.onPrimary(() -> filmStorage.forEachFilm(this::indexFilm));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Поисковый индекс построен: {} фильмов, {} терминов", filmTerms.size(), postings.size());
+    }
+
+    // Добавление фильма в индекс или его переиндексация после изменения
+    public void index(Film film) {
+        lock.writeLock().lock();
+        try {
+            indexFilm(film);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Страница результатов поиска по убыванию релевантности
+    public List<Film> search(String query, int offset, int limit) {
+        String[] queryTerms = tokenize(query).toArray(String[]::new);
+        if (queryTerms.length == 0) {
+            return List.of();
+        }
+
+        Map<Integer, Double> scores;
+        lock.readLock().lock();
+        try {
+            scores = score(queryTerms);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return filmStorage.getFilmsByIds(topIds(scores, offset, limit));
+    }
+
+    // Вызывается под блокировкой записи
+    private void indexFilm(Film film) {
+        String[] previous = filmTerms.remove(film.getId());
+        if (previous != null) {
+            for (String term : previous) {
+                IntIntHashMap films = postings.get(term);
+                films.addTo(film.getId(), -films.get(film.getId()));
+                if (films.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+
+        Map<String, Integer> weights = new HashMap<>();
+        tokenize(film.getName()).forEach(term -> weights.merge(term, NAME_WEIGHT, Integer::sum));
+        tokenize(film.getDescription()).forEach(term -> weights.merge(term, 1, Integer::sum));
+        weights.forEach((term, weight) ->
+                postings.computeIfAbsent(term, t -> new IntIntHashMap()).addTo(film.getId(), weight));
+        filmTerms.put(film.getId(), weights.keySet().toArray(String[]::new));
+    }
+
+    // Вызывается под блокировкой чтения
+    private Map<Integer, Double> score(String[] queryTerms) {
+        double filmsCount = Math.max(filmTerms.size(), 1);
+        Map<Integer, Double> scores = null;
+
+        for (String queryTerm : queryTerms) {
+            Map<Integer, Double> termScores = new HashMap<>();
+            int expanded = 0;
+            for (Map.Entry<String, IntIntHashMap> entry
+                    : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).entrySet()) {
+                if (expanded++ == MAX_PREFIX_TERMS) {
+                    break;
+                }
+                IntIntHashMap films = entry.getValue();
+                double idf = Math.log(1 + filmsCount / films.size());
+                int boost = entry.getKey().equals(queryTerm) ? EXACT_MATCH_BOOST : 1;
+                films.forEach((filmId, weight) ->
+                        termScores.merge(filmId, weight * idf * boost, Math::max));
+            }
+
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // Фильм должен совпасть со всеми словами запроса
+                Map<Integer, Double> current = scores;
+                termScores.keySet().retainAll(current.keySet());
+                termScores.replaceAll((filmId, score) -> score + current.get(filmId));
+                scores = termScores;
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    private static int[] topIds(Map<Integer, Double> scores, int offset, int limit) {
+        int needed = offset + limit;
+        Comparator<Map.Entry<Integer, Double>> byScore = Map.Entry.<Integer, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(Math.min(needed, scores.size()) + 1, byScore);
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > needed) {
+                top.poll();
+            }
+        }
+
+        List<Map.Entry<Integer, Double>> sorted = new ArrayList<>(top);
+        sorted.sort(byScore.reversed());
+        return sorted.stream()
+                .skip(offset)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+    }
+
+    // Разбиение текста на слова: буквы и цифры в нижнем регистре, "ё" приравнивается к "е"
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char lower = Character.toLowerCase(c);
+                term.append(lower == 'ё' ? 'е' : lower);
+            } else if (!term.isEmpty()) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+}
@@ -1,33 +1,78 @@
 package ru.yandex.practicum.filmorate.service;
 
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 public class FilmService {
 
     private final FilmStorage filmStorage;
     private final UserService userService;
+    private final ReferenceDataCache referenceData;
+    private final Validator validator;
+    private final Optional<LikeWriteBuffer> likeWriteBuffer;
+    private final RecommendationService recommendationService;
+    private final FilmSearchService filmSearchService;
+    private final PopularFilmsService popularFilmsService;
+    private final TrendingFilmsService trendingFilmsService;
 
     @Autowired
-    public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
-            UserService userService) {
+    public FilmService(FilmStorage filmStorage,
+            UserService userService,
+            ReferenceDataCache referenceData,
+            Validator validator,
+            Optional<LikeWriteBuffer> likeWriteBuffer,
+            RecommendationService recommendationService,
+            FilmSearchService filmSearchService,
+            PopularFilmsService popularFilmsService,
+            TrendingFilmsService trendingFilmsService) {
         this.filmStorage = filmStorage;
         this.userService = userService;
+        this.referenceData = referenceData;
+        this.validator = validator;
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.recommendationService = recommendationService;
+        this.filmSearchService = filmSearchService;
+        this.popularFilmsService = popularFilmsService;
+        this.trendingFilmsService = trendingFilmsService;
     }
 
     public Film addFilm(Film film) {
-        return filmStorage.addFilm(film);
+        Film addedFilm = filmStorage.addFilm(film);
+        onFilmChanged(addedFilm);
+        return addedFilm;
+    }
+
+    public List<BatchItemResult> addFilms(List<Film> films) {
+        List<BatchItemResult> results = BatchImporter.importAll(films, this::validateForImport,
+                filmStorage::addFilms, filmStorage::addFilm, Film::getId);
+        for (BatchItemResult result : results) {
+            if (result.getError() == null) {
+                onFilmChanged(films.get(result.getIndex()));
+            }
+        }
+        return results;
     }
 
     public Film updateFilm(Film film) {
-        filmStorage.getFilmById(film.getId());
+        Film updatedFilm = filmStorage.updateFilm(film);
+        onFilmChanged(updatedFilm);
+        return updatedFilm;
+    }
 
-        return filmStorage.updateFilm(film);
+    public List<Film> searchFilms(String query, int offset, int limit) {
+        return filmSearchService.search(query, offset, limit);
     }
 
     public Film getFilmById(int id) {
@@ -38,21 +83,109 @@ public class FilmService {
         return filmStorage.getAllFilms();
     }
 
-    public void addLike(int filmId, int userId) {
-        getFilmById(filmId);
-        userService.getUserById(userId);
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
 
-        filmStorage.addLike(filmId, userId);
+    public void forEachFilm(Consumer<Film> action) {
+        filmStorage.forEachFilm(action);
     }
 
-    public void removeLike(int filmId, int userId) {
-        getFilmById(filmId);
-        userService.getUserById(userId);
+    public void addLike(int filmId, int userId) {
+        LikeChange change = new LikeChange(filmId, userId, true);
+        boolean changed = true;
+        if (!offerToBuffer(change)) {
+            try {
+                changed = writeDirectly(change, () -> filmStorage.addLike(filmId, userId));
+            } catch (DataIntegrityViolationException e) {
+                // Нарушен внешний ключ: выясняем, кого нет, чтобы ответить 404
+                checkFilmAndUser(filmId, userId);
+                throw e;
+            }
+        }
+        onLikeChanged(change, changed);
+    }
 
-        filmStorage.removeLike(filmId, userId);
+    public void removeLike(int filmId, int userId) {
+        LikeChange change = new LikeChange(filmId, userId, false);
+        boolean changed = true;
+        if (!offerToBuffer(change)) {
+            changed = writeDirectly(change, () -> filmStorage.removeLike(filmId, userId));
+            // Существование фильма и пользователя проверяется только если лайка не было
+            if (!changed) {
+                checkFilmAndUser(filmId, userId);
+            }
+        }
+        onLikeChanged(change, changed);
     }
 
     public List<Film> getMostPopularFilms(int count) {
         return filmStorage.getMostPopularFilms(count);
     }
+
+    // Популярные фильмы жанра и/или года из предрассчитанных рейтингов
+    public List<Film> getMostPopularFilms(int count, Integer genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return getMostPopularFilms(count);
+        }
+        return popularFilmsService.getMostPopularFilms(count, genreId, year);
+    }
+
+    private void onFilmChanged(Film film) {
+        filmSearchService.index(film);
+        popularFilmsService.onFilmChanged(film);
+    }
+
+    // Лайк из буфера считается изменившим данные: рейтинги и окна трендов учитывают лайки
+    // идемпотентно, поэтому повтор или удаление несуществующего лайка их не сдвигает
+    private void onLikeChanged(LikeChange change, boolean changed) {
+        recommendationService.onLikeChanged(change);
+        if (changed) {
+            popularFilmsService.onLikeChanged(change);
+            trendingFilmsService.onLikeChanged(change);
+        }
+    }
+
+    // Отложенная запись лайка, если она включена и в буфере есть место.
+    // Ограничения базы проверят запись только при сбросе буфера, поэтому участники проверяются сразу.
+    private boolean offerToBuffer(LikeChange change) {
+        if (likeWriteBuffer.isEmpty()) {
+            return false;
+        }
+        checkFilmAndUser(change.filmId(), change.userId());
+        return likeWriteBuffer.get().offer(change);
+    }
+
+    // Синхронная запись лайка; при включенном буфере - в порядке с его пакетами
+    private boolean writeDirectly(LikeChange change, Supplier<Boolean> write) {
+        return likeWriteBuffer.map(buffer -> buffer.writeThrough(change, write)).orElseGet(write);
+    }
+
+    private void checkFilmAndUser(int filmId, int userId) {
+        getFilmById(filmId);
+        userService.getUserById(userId);
+    }
+
+    // Проверка фильма из пакета без обращения к базе данных
+    private String validateForImport(Film film) {
+        if (film == null) {
+            return "Фильм не указан";
+        }
+
+        String violations = BatchImporter.describeViolations(validator.validate(film));
+        if (violations != null) {
+            return violations;
+        }
+        if (film.getMpa() == null) {
+            return "Рейтинг MPA не указан";
+        }
+
+        try {
+            referenceData.validateMpaId(film.getMpa().getId());
+            referenceData.validateGenreIds(film.getGenres());
+        } catch (ValidationException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
 }
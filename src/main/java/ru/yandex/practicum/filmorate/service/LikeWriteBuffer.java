@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+// Отложенная запись лайков (filmorate.likes.write-behind.enabled=true).
+// Изменения копятся в ограниченном буфере, повторные изменения одной пары (фильм, пользователь)
+// схлопываются до последнего, буфер периодически сбрасывается в хранилище одним пакетом.
+// Гарантии: при штатной остановке буфер сбрасывается полностью; при аварийном завершении
+// процесса теряются изменения, принятые за последний интервал сброса.
+// Запись в хранилище (пакет и синхронная запись в обход буфера) идет под общей блокировкой,
+// чтобы более позднее изменение пары не было перезаписано более ранним из пакета.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBuffer {
+
+    private final FilmStorage filmStorage;
+    private final int capacity;
+    private final Map<Long, LikeChange> pending = new LinkedHashMap<>();
+    private final Object writeLock = new Object();
+    private final Timer flushTimer;
+    private final Counter rejectedCounter;
+    private final Counter failedCounter;
+    private boolean closed;
+
+    @Autowired
+    public LikeWriteBuffer(FilmStorage filmStorage, MeterRegistry meterRegistry,
+            @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity) {
+        this.filmStorage = filmStorage;
+        this.capacity = capacity;
+        this.flushTimer = Timer.builder("filmorate.likes.buffer.flush")
+                .description("Время сброса буфера лайков")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("filmorate.likes.buffer.rejected")
+                .description("Изменения, записанные синхронно из-за переполнения буфера")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("filmorate.likes.buffer.failed")
+                .description("Изменения, которые не удалось записать")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.likes.buffer.depth", this, LikeWriteBuffer::size)
+                .description("Изменений лайков в буфере")
+                .register(meterRegistry);
+    }
+
+    // Постановка изменения в буфер; false, если буфер заполнен или закрыт
+    public boolean offer(LikeChange change) {
+        long key = key(change);
+        synchronized (pending) {
+            if (closed || (pending.size() >= capacity && !pending.containsKey(key))) {
+                rejectedCounter.increment();
+                return false;
+            }
+            pending.remove(key);
+            pending.put(key, change);
+            return true;
+        }
+    }
+
+    // Синхронная запись изменения, не принятого буфером. Выполняется после пакета, который пишется
+    // в этот момент; еще не записанное изменение той же пары отменяется как устаревшее.
+    public <T> T writeThrough(LikeChange change, Supplier<T> write) {
+        synchronized (writeLock) {
+            synchronized (pending) {
+                pending.remove(key(change));
+            }
+            return write.get();
+        }
+    }
+
+    public int size() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        synchronized (writeLock) {
+            List<LikeChange> changes;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                changes = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+
+            flushTimer.record(() -> write(changes));
+        }
+    }
+
+    // Последний сброс дожидается пакета, который пишется по расписанию
+    @PreDestroy
+    public void close() {
+        synchronized (pending) {
+            closed = true;
+        }
+        flush();
+    }
+
+    private static long key(LikeChange change) {
+        return ((long) change.filmId() << 32) | (change.userId() & 0xFFFFFFFFL);
+    }
+
+    private void write(List<LikeChange> changes) {
+        try {
+            filmStorage.applyLikeChanges(changes);
+        } catch (DataAccessException e) {
+            log.warn("Пакет из {} изменений лайков не записан, запись по одному: {}",
+                    changes.size(), e.getMostSpecificCause().getMessage());
+            for (LikeChange change : changes) {
+                try {
+                    filmStorage.applyLikeChanges(List.of(change));
+                } catch (DataAccessException ex) {
+                    failedCounter.increment();
+                    log.error("Изменение лайка {} не записано: {}", change,
+                            ex.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+
+// Сверка счетчиков лайков с таблицей film_likes: при старте и по расписанию
+@Slf4j
+@Component
+@Profile("!in-memory")
+public class LikesCountReconciler {
+
+    private final FilmDbStorage filmDbStorage;
+
+    @Autowired
+    public LikesCountReconciler(FilmDbStorage filmDbStorage) {
+        this.filmDbStorage = filmDbStorage;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${filmorate.likes.reconcile-cron:0 0 4 * * *}")
+    public void reconcile() {
+        int fixed = filmDbStorage.reconcileLikesCounts();
+        if (fixed > 0) {
+            log.warn("Счетчики лайков исправлены у {} фильмов", fixed);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.IntHashSet;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+
+// Рейтинги популярности по жанрам и годам выпуска.
+// Для каждого жанра и года хранится упорядоченное множество фильмов (лайки по убыванию, ID по
+// возрастанию), поэтому первые count элементов - готовый топ, а изменение лайка или жанров
+// фильма переставляет только его позиции. Множества полные, а не усеченные до K: фильм,
+// потерявший лайк, не требует дочитывать топ из базы.
+// Изменения приходят из FilmService; полное перестроение - при старте и по расписанию.
+// Для фильма хранится множество поставивших лайк, и позиция меняется, только если оно изменилось:
+// повторный лайк, удаление несуществующего лайка из буфера отложенной записи и изменение,
+// уже прочитанное перестроением, не сдвигают рейтинг.
+// Версия популярных фильмов для ETag увеличивается после применения изменения к рейтингам.
+@Slf4j
+@Service
+public class PopularFilmsService {
+
+    private final FilmStorage filmStorage;
+    private final ReferenceDataCache referenceData;
+    private final ContentVersions contentVersions;
+    private final Timer rebuildTimer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private State state = new State();
+    // Изменения, принятые во время перестроения; применяются к новым рейтингам перед заменой
+    private List<Runnable> changesDuringRebuild;
+
+    @Autowired
+    public PopularFilmsService(FilmStorage filmStorage, ReferenceDataCache referenceData,
+            ContentVersions contentVersions, MeterRegistry meterRegistry) {
+        this.filmStorage = filmStorage;
+        this.referenceData = referenceData;
+        this.contentVersions = contentVersions;
+        this.rebuildTimer = Timer.builder("filmorate.popular.rebuild")
+                .description("Время полного перестроения рейтингов по жанрам и годам")
+                .register(meterRegistry);
+    }
+
+    // Самые популярные фильмы жанра и/или года выпуска (null - без фильтра)
+    public List<Film> getMostPopularFilms(int count, Integer genreId, Integer year) {
+        if (genreId != null) {
+            referenceData.getGenreById(genreId);
+        }
+
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = state.top(count, genreId, year);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return filmStorage.getFilmsByIds(ids);
+    }
+
+    // Добавление фильма или изменение его жанров и даты выпуска
+    public void onFilmChanged(Film film) {
+        FilmKey key = FilmKey.of(film);
+        apply(state -> state.put(key));
+    }
+
+    // Учет фактически добавленного или удаленного лайка
+    public void onLikeChanged(LikeChange change) {
+        apply(state -> state.changeLike(change.filmId(), change.userId(), change.added()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${filmorate.popular.rebuild-cron:0 */10 * * * *}")
+    public void rebuild() {
+        rebuildTimer.record(this::doRebuild);
+    }
+
+    private void apply(Consumer<State> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(() -> change.accept(state));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        contentVersions.popularFilmsChanged();
+    }
+
+    private void doRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                return;
+            }
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        State rebuilt;
+        try {
+            // Изменения до начала перестроения должны быть в прочитанных данных: реплика может отставать
+            rebuilt = ReplicaRoutingDataSource.onPrimary(this::build);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Изменения ссылаются на поле state, поэтому сначала подменяем состояние
+            state = rebuilt;
+            changesDuringRebuild.forEach(Runnable::run);
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        contentVersions.popularFilmsChanged();
+        log.debug("Рейтинги по жанрам и годам перестроены: {} фильмов", rebuilt.films.size());
+    }
+
+    private State build() {
+        State rebuilt = new State();
+        filmStorage.forEachLike((filmId, userId) -> rebuilt.changeLike(filmId, userId, true));
+        filmStorage.forEachFilm(film -> rebuilt.put(FilmKey.of(film)));
+        return rebuilt;
+    }
+
+    // Атрибуты фильма, по которым строятся рейтинги
+    private record FilmKey(int filmId, Integer year, int[] genreIds) {
+
+        static FilmKey of(Film film) {
+            int[] genreIds = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                    .mapToInt(Genre::getId)
+                    .distinct()
+                    .toArray();
+            Integer year = film.getReleaseDate() == null ? null : film.getReleaseDate().getYear();
+            return new FilmKey(film.getId(), year, genreIds);
+        }
+    }
+
+    private static class State {
+
+        private final Map<Integer, FilmKey> films = new HashMap<>();
+        // Пользователи, поставившие лайк фильму
+        private final Map<Integer, IntHashSet> likers = new HashMap<>();
+        private final Map<Integer, NavigableSet<Long>> byGenre = new HashMap<>();
+        private final Map<Integer, NavigableSet<Long>> byYear = new HashMap<>();
+
+        void put(FilmKey key) {
+            int filmLikes = likesOf(key.filmId());
+            FilmKey previous = films.put(key.filmId(), key);
+            if (previous != null) {
+                unlink(previous, filmLikes);
+            }
+            link(key, filmLikes);
+        }
+
+        // Лайки ведутся и для фильма, о котором рейтинги еще не знают
+        void changeLike(int filmId, int userId, boolean added) {
+            IntHashSet filmLikers = likers.get(filmId);
+            boolean liked = filmLikers != null && filmLikers.contains(userId);
+            if (liked == added) {
+                return;
+            }
+
+            FilmKey key = films.get(filmId);
+            int filmLikes = likesOf(filmId);
+            if (key != null) {
+                unlink(key, filmLikes);
+            }
+            if (added) {
+                likers.computeIfAbsent(filmId, id -> new IntHashSet()).add(userId);
+            } else {
+                filmLikers.remove(userId);
+                if (filmLikers.isEmpty()) {
+                    likers.remove(filmId);
+                }
+            }
+            if (key != null) {
+                link(key, likesOf(filmId));
+            }
+        }
+
+        int[] top(int count, Integer genreId, Integer year) {
+            NavigableSet<Long> ranking;
+            if (genreId != null && year != null) {
+                // Перебираем меньший из рейтингов и проверяем второй признак
+                NavigableSet<Long> genreRanking = byGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+                NavigableSet<Long> yearRanking = byYear.getOrDefault(year, Collections.emptyNavigableSet());
+                boolean genreSmaller = genreRanking.size() <= yearRanking.size();
+                ranking = genreSmaller ? genreRanking : yearRanking;
+                return ranking.stream()
+                        .mapToInt(State::filmIdOf)
+                        .filter(filmId -> genreSmaller
+                                ? year.equals(films.get(filmId).year())
+                                : hasGenre(films.get(filmId), genreId))
+                        .limit(count)
+                        .toArray();
+            }
+
+            if (genreId != null) {
+                ranking = byGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+            } else if (year != null) {
+                ranking = byYear.getOrDefault(year, Collections.emptyNavigableSet());
+            } else {
+                throw new IllegalArgumentException("Не задан ни жанр, ни год");
+            }
+            return ranking.stream().limit(count).mapToInt(State::filmIdOf).toArray();
+        }
+
+        private int likesOf(int filmId) {
+            IntHashSet filmLikers = likers.get(filmId);
+            return filmLikers == null ? 0 : filmLikers.size();
+        }
+
+        private void link(FilmKey key, int filmLikes) {
+            long rank = rankOf(key.filmId(), filmLikes);
+            for (int genreId : key.genreIds()) {
+                byGenre.computeIfAbsent(genreId, id -> new TreeSet<>()).add(rank);
+            }
+            if (key.year() != null) {
+                byYear.computeIfAbsent(key.year(), y -> new TreeSet<>()).add(rank);
+            }
+        }
+
+        private void unlink(FilmKey key, int filmLikes) {
+            long rank = rankOf(key.filmId(), filmLikes);
+            for (int genreId : key.genreIds()) {
+                byGenre.get(genreId).remove(rank);
+            }
+            if (key.year() != null) {
+                byYear.get(key.year()).remove(rank);
+            }
+        }
+
+        private static boolean hasGenre(FilmKey key, int genreId) {
+            for (int id : key.genreIds()) {
+                if (id == genreId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // По возрастанию ключа: больше лайков раньше, при равенстве - меньший ID
+        private static long rankOf(int filmId, int filmLikes) {
+            return ((long) (Integer.MAX_VALUE - filmLikes) << 32) | filmId;
+        }
+
+        private static int filmIdOf(long rank) {
+            return (int) rank;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.IntHashSet;
+import ru.yandex.practicum.filmorate.storage.IntIntHashMap;
+
+// Рекомендации "пользователи, которым понравился этот фильм, также оценили".
+// Хранит разреженную матрицу совместных лайков: для каждого фильма - сколько пользователей
+// лайкнули его вместе с каждым другим фильмом. Матрица обновляется при каждом лайке
+// и периодически полностью перестраивается по film_likes в ForkJoinPool.
+// Сходство фильмов - косинусное: cooc(a, b) / sqrt(likes(a) * likes(b)).
+@Slf4j
+@Service
+public class RecommendationService {
+
+    public static final int MAX_COUNT = 100;
+
+    // Для рекомендаций пользователю учитываются не более стольких его лайков
+    private static final int MAX_SEED_FILMS = 200;
+    private static final int ROWS_PER_TASK = 256;
+
+    private final FilmStorage filmStorage;
+    private final UserService userService;
+    private final Timer rebuildTimer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private State state = new State(new HashMap<>(), new HashMap<>(), new IntIntHashMap());
+    // Изменения, принятые во время перестроения; применяются к новой матрице перед заменой
+    private List<LikeChange> changesDuringRebuild;
+
+    @Autowired
+    public RecommendationService(FilmStorage filmStorage, UserService userService,
+            MeterRegistry meterRegistry) {
+        this.filmStorage = filmStorage;
+        this.userService = userService;
+        this.rebuildTimer = Timer.builder("filmorate.recommendations.rebuild")
+                .description("Время полного перестроения матрицы совместных лайков")
+                .register(meterRegistry);
+    }
+
+    // Учет лайка или его удаления
+    public void onLikeChanged(LikeChange change) {
+        lock.writeLock().lock();
+        try {
+            state.apply(change);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Фильмы, похожие на заданный, по убыванию сходства
+    public List<Film> getSimilarFilms(int filmId, int count) {
+        filmStorage.getFilmById(filmId);
+
+        Map<Integer, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            state.addSimilarities(filmId, scores);
+        } finally {
+            lock.readLock().unlock();
+        }
+        scores.remove(filmId);
+
+        return filmStorage.getFilmsByIds(topIds(scores, count));
+    }
+
+    // Рекомендации пользователю: сумма сходств с его лайками, без уже лайкнутых фильмов
+    public List<Film> getRecommendations(int userId, int count) {
+        userService.getUserById(userId);
+
+        Map<Integer, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            IntHashSet liked = state.userLikes().get(userId);
+            if (liked == null) {
+                return List.of();
+            }
+            int[] seeds = liked.toArray();
+            for (int i = 0; i < Math.min(seeds.length, MAX_SEED_FILMS); i++) {
+                state.addSimilarities(seeds[i], scores);
+            }
+            liked.forEach(scores::remove);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return filmStorage.getFilmsByIds(topIds(scores, count));
+    }
+
+    // Полное перестроение матрицы по хранилищу
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${filmorate.recommendations.rebuild-cron:0 */30 * * * *}")
+    public void rebuild() {
+        rebuildTimer.record(this::doRebuild);
+    }
+
+    private void doRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                return;
+            }
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        State rebuilt;
+        try {
+            // Изменения до начала перестроения должны быть в прочитанных данных: реплика может отставать
+            rebuilt = ReplicaRoutingDataSource.onPrimary(this::build);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(rebuilt::apply);
+            changesDuringRebuild = null;
+            state = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Матрица совместных лайков перестроена: {} фильмов", rebuilt.rows().size());
+    }
+
+    private State build() {
+        Map<Integer, IntHashSet> userLikes = new HashMap<>();
+        Map<Integer, IntHashSet> filmLikers = new HashMap<>();
+        filmStorage.forEachLike((filmId, userId) -> {
+            userLikes.computeIfAbsent(userId, id -> new IntHashSet()).add(filmId);
+            filmLikers.computeIfAbsent(filmId, id -> new IntHashSet()).add(userId);
+        });
+
+        // Строка матрицы для фильма a считается независимо: сумма лайков всех его зрителей,
+        // поэтому строки распределяются между задачами без общей изменяемой памяти
+        int[] filmIds = filmLikers.keySet().stream().mapToInt(Integer::intValue).toArray();
+        IntIntHashMap[] rows = new IntIntHashMap[filmIds.length];
+        ForkJoinPool.commonPool().invoke(new RowsTask(filmIds, rows, 0, filmIds.length,
+                filmLikers, userLikes));
+
+        Map<Integer, IntIntHashMap> rowsByFilm = new HashMap<>(filmIds.length * 2);
+        IntIntHashMap likesCount = new IntIntHashMap(filmIds.length);
+        for (int i = 0; i < filmIds.length; i++) {
+            rowsByFilm.put(filmIds[i], rows[i]);
+            likesCount.addTo(filmIds[i], filmLikers.get(filmIds[i]).size());
+        }
+        return new State(userLikes, rowsByFilm, likesCount);
+    }
+
+    private static int[] topIds(Map<Integer, Double> scores, int count) {
+        Comparator<Map.Entry<Integer, Double>> byScore = Map.Entry.<Integer, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(count + 1, byScore);
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+
+        List<Map.Entry<Integer, Double>> sorted = new ArrayList<>(top);
+        sorted.sort(byScore.reversed());
+        return sorted.stream().mapToInt(Map.Entry::getKey).toArray();
+    }
+
+    private static class RowsTask extends RecursiveAction {
+
+        private final int[] filmIds;
+        private final IntIntHashMap[] rows;
+        private final int from;
+        private final int to;
+        private final Map<Integer, IntHashSet> filmLikers;
+        private final Map<Integer, IntHashSet> userLikes;
+
+        RowsTask(int[] filmIds, IntIntHashMap[] rows, int from, int to,
+                Map<Integer, IntHashSet> filmLikers, Map<Integer, IntHashSet> userLikes) {
+            this.filmIds = filmIds;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.filmLikers = filmLikers;
+            this.userLikes = userLikes;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowsTask(filmIds, rows, from, middle, filmLikers, userLikes),
+                        new RowsTask(filmIds, rows, middle, to, filmLikers, userLikes));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                int filmId = filmIds[i];
+                IntIntHashMap row = new IntIntHashMap();
+                filmLikers.get(filmId).forEach(userId -> userLikes.get(userId).forEach(otherId -> {
+                    if (otherId != filmId) {
+                        row.addTo(otherId, 1);
+                    }
+                }));
+                rows[i] = row;
+            }
+        }
+    }
+
+    private record State(Map<Integer, IntHashSet> userLikes, Map<Integer, IntIntHashMap> rows,
+            IntIntHashMap likesCount) {
+
+        void apply(LikeChange change) {
+            int filmId = change.filmId();
+            IntHashSet liked = userLikes.computeIfAbsent(change.userId(), id -> new IntHashSet());
+            boolean changed = change.added() ? liked.add(filmId) : liked.remove(filmId);
+            if (!changed) {
+                return;
+            }
+
+            int delta = change.added() ? 1 : -1;
+            likesCount.addTo(filmId, delta);
+            liked.forEach(otherId -> {
+                if (otherId != filmId) {
+                    rows.computeIfAbsent(filmId, id -> new IntIntHashMap()).addTo(otherId, delta);
+                    rows.computeIfAbsent(otherId, id -> new IntIntHashMap()).addTo(filmId, delta);
+                }
+            });
+        }
+
+        void addSimilarities(int filmId, Map<Integer, Double> scores) {
+            IntIntHashMap row = rows.get(filmId);
+            if (row == null) {
+                return;
+            }
+            double filmLikes = likesCount.get(filmId);
+            row.forEach((otherId, together) -> {
+                double similarity = together / Math.sqrt(filmLikes * likesCount.get(otherId));
+                scores.merge(otherId, similarity, Double::sum);
+            });
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.IntIntHashMap;
+
+// Самые популярные фильмы за последние сутки или неделю.
+// Лайки последней недели разложены по часовым корзинам (кольцо из 168 часов), для каждого окна
+// ведутся суммы лайков по фильмам. С ходом времени из окна выходит только самая старая корзина:
+// ее лайки вычитаются из сумм без чтения таблицы лайков. При старте корзины заполняются лайками
+// за неделю - запрос по индексу film_likes_created_idx, а не по всей таблице.
+@Slf4j
+@Service
+public class TrendingFilmsService {
+
+    public static final int MAX_COUNT = 100;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final FilmStorage filmStorage;
+    private final LongSupplier clock;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private State state;
+    // Изменения, принятые во время перестроения; применяются к новым корзинам перед заменой
+    private List<Consumer<State>> changesDuringRebuild;
+
+    @Autowired
+    public TrendingFilmsService(FilmStorage filmStorage) {
+        this(filmStorage, System::currentTimeMillis);
+    }
+
+    public TrendingFilmsService(FilmStorage filmStorage, LongSupplier clock) {
+        this.filmStorage = filmStorage;
+        this.clock = clock;
+        this.state = new State(currentHour());
+    }
+
+    public enum Window {
+        DAY("24h", 24),
+        WEEK("7d", 7 * 24);
+
+        private final String name;
+        private final int hours;
+
+        Window(String name, int hours) {
+            this.name = name;
+            this.hours = hours;
+        }
+
+        public static Window of(String name) {
+            for (Window window : values()) {
+                if (window.name.equals(name)) {
+                    return window;
+                }
+            }
+            throw new ValidationException("Неизвестное окно: " + name);
+        }
+    }
+
+    // Фильмы с наибольшим числом лайков, поставленных за окно (по убыванию, при равенстве - меньший ID)
+    public List<Film> getTrendingFilms(Window window, int count) {
+        long hour = currentHour();
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = state.currentHour == hour ? state.top(window, count) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Наступил новый час, а плановое истечение корзин еще не сработало
+        if (ids == null) {
+            apply(current -> current.advance(hour));
+            lock.readLock().lock();
+            try {
+                ids = state.top(window, count);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return filmStorage.getFilmsByIds(ids);
+    }
+
+    // Учет фактически добавленного или удаленного лайка
+    public void onLikeChanged(LikeChange change) {
+        long hour = currentHour();
+        long like = likeKey(change.filmId(), change.userId());
+        if (change.added()) {
+            apply(current -> current.add(like, hour));
+        } else {
+            apply(current -> current.remove(like));
+        }
+    }
+
+    @Scheduled(cron = "${filmorate.trending.expire-cron:0 0 * * * *}")
+    public void expireBuckets() {
+        long hour = currentHour();
+        apply(current -> current.advance(hour));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                return;
+            }
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        State rebuilt;
+        try {
+            long hour = currentHour();
+            State building = new State(hour);
+            long since = (hour - Window.WEEK.hours + 1) * HOUR_MILLIS;
+            // Лайки до начала перестроения должны быть прочитаны: реплика может отставать
+            ReplicaRoutingDataSource.onPrimary(() -> filmStorage.forEachLikeSince(since, (filmId, userId, likedAt) ->
+                    building.add(likeKey(filmId, userId), Math.min(likedAt / HOUR_MILLIS, hour))));
+            rebuilt = building;
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Изменения идемпотентны: лайк, уже прочитанный из хранилища, не учитывается дважды
+            changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+            changesDuringRebuild = null;
+            state = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Корзины лайков за неделю построены: {} лайков", rebuilt.likeHours.size());
+    }
+
+    private void apply(Consumer<State> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(state);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long currentHour() {
+        return clock.getAsLong() / HOUR_MILLIS;
+    }
+
+    private static long likeKey(int filmId, int userId) {
+        return ((long) filmId << 32) | userId;
+    }
+
+    private static int filmIdOf(long like) {
+        return (int) (like >>> 32);
+    }
+
+    private static class State {
+
+        private static final int RING_SIZE = Window.WEEK.hours;
+
+        // Час каждого лайка, попавшего в неделю, и лайки по часовым корзинам
+        private final Map<Long, Long> likeHours = new HashMap<>();
+        private final List<Set<Long>> buckets = new ArrayList<>(RING_SIZE);
+        private IntIntHashMap dayCounts = new IntIntHashMap();
+        private IntIntHashMap weekCounts = new IntIntHashMap();
+        private long currentHour;
+
+        State(long currentHour) {
+            this.currentHour = currentHour;
+            for (int i = 0; i < RING_SIZE; i++) {
+                buckets.add(new HashSet<>());
+            }
+        }
+
+        void add(long like, long hour) {
+            if (hour > currentHour) {
+                advance(hour);
+            }
+            if (hour <= currentHour - RING_SIZE || likeHours.putIfAbsent(like, hour) != null) {
+                return;
+            }
+            bucket(hour).add(like);
+            weekCounts.addTo(filmIdOf(like), 1);
+            if (hour > currentHour - Window.DAY.hours) {
+                dayCounts.addTo(filmIdOf(like), 1);
+            }
+        }
+
+        void remove(long like) {
+            Long hour = likeHours.remove(like);
+            if (hour == null) {
+                return;
+            }
+            bucket(hour).remove(like);
+            weekCounts.addTo(filmIdOf(like), -1);
+            if (hour > currentHour - Window.DAY.hours) {
+                dayCounts.addTo(filmIdOf(like), -1);
+            }
+        }
+
+        // Сдвиг окон: каждый прошедший час выводит одну корзину из суток и одну - из недели
+        void advance(long hour) {
+            if (hour - currentHour >= RING_SIZE) {
+                // За неделю без событий истекли все корзины
+                likeHours.clear();
+                buckets.forEach(Set::clear);
+                dayCounts = new IntIntHashMap();
+                weekCounts = new IntIntHashMap();
+                currentHour = hour;
+                return;
+            }
+            while (currentHour < hour) {
+                currentHour++;
+                for (long like : bucket(currentHour - Window.DAY.hours)) {
+                    dayCounts.addTo(filmIdOf(like), -1);
+                }
+                Set<Long> expired = bucket(currentHour - RING_SIZE);
+                for (long like : expired) {
+                    likeHours.remove(like);
+                    weekCounts.addTo(filmIdOf(like), -1);
+                }
+                expired.clear();
+            }
+        }
+
+        int[] top(Window window, int count) {
+            IntIntHashMap counts = window == Window.DAY ? dayCounts : weekCounts;
+            // Частичная сортировка: в куче хранятся только count лучших пар (лайки, ID)
+            Comparator<long[]> byLikes = Comparator.<long[]>comparingLong(entry -> entry[1])
+                    .thenComparing(entry -> entry[0], Comparator.reverseOrder());
+            PriorityQueue<long[]> top = new PriorityQueue<>(count + 1, byLikes);
+            counts.forEach((filmId, likes) -> {
+                top.offer(new long[]{filmId, likes});
+                if (top.size() > count) {
+                    top.poll();
+                }
+            });
+
+            List<long[]> sorted = new ArrayList<>(top);
+            sorted.sort(byLikes.reversed());
+            return sorted.stream().mapToInt(entry -> (int) entry[0]).toArray();
+        }
+
+        private Set<Long> bucket(long hour) {
+            return buckets.get((int) Math.floorMod(hour, (long) RING_SIZE));
+        }
+    }
+}
@@ -1,29 +1,39 @@
 package ru.yandex.practicum.filmorate.service;
 
-import java.util.stream.Collectors;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
 
     private final UserStorage userStorage;
+    private final Validator validator;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(UserStorage userStorage, Validator validator) {
         this.userStorage = userStorage;
+        this.validator = validator;
     }
 
     public User createUser(User user) {
         return userStorage.createUser(user);
     }
 
+    public List<BatchItemResult> createUsers(List<User> users) {
+        return BatchImporter.importAll(users,
+                user -> user == null ? "Пользователь не указан"
+                        : BatchImporter.describeViolations(validator.validate(user)),
+                userStorage::createUsers, userStorage::createUser, User::getId);
+    }
+
     public User updateUser(User user) {
-        userStorage.getUserById(user.getId());
         return userStorage.updateUser(user);
     }
 
@@ -35,45 +45,63 @@ public class UserService {
         return userStorage.getAllUsers();
     }
 
-    public void addFriend(int userId, int friendId) {
-        getUserById(userId);
-        getUserById(friendId);
+    public List<User> getUsersPage(int afterId, int limit) {
+        return userStorage.getUsersPage(afterId, limit);
+    }
 
-        userStorage.addFriend(userId, friendId);
+    public void forEachUser(Consumer<User> action) {
+        userStorage.forEachUser(action);
     }
 
-    public void removeFriend(int userId, int friendId) {
-        getUserById(userId);
-        getUserById(friendId);
+    public void addFriend(int userId, int friendId) {
+        try {
+            userStorage.addFriend(userId, friendId);
+        } catch (DataIntegrityViolationException e) {
+            // Нарушен внешний ключ: выясняем, кого нет, чтобы ответить 404
+            getUserById(userId);
+            getUserById(friendId);
+            throw e;
+        }
+    }
 
-        userStorage.removeFriend(userId, friendId);
+    public void removeFriend(int userId, int friendId) {
+        // Существование пользователей проверяется только если такой дружбы не было
+        if (!userStorage.removeFriend(userId, friendId)) {
+            getUserById(userId);
+            getUserById(friendId);
+        }
     }
 
     public List<User> getFriends(int userId) {
-        getUserById(userId);
+        List<User> friends = userStorage.getFriends(userId);
+
+        // Существование пользователя проверяется только если друзей нет
+        if (friends.isEmpty()) {
+            getUserById(userId);
+        }
 
-        return userStorage.getFriends(userId);
+        return friends;
     }
 
-    public List<User> getCommonFriends(int userId, int otherId) {
-        getUserById(userId);
-        getUserById(otherId);
+    public int getFriendsCount(int userId) {
+        int count = userStorage.getFriendsCount(userId);
 
-        List<User> userFriends = userStorage.getFriends(userId);
-        List<User> otherFriends = userStorage.getFriends(otherId);
+        if (count == 0) {
+            getUserById(userId);
+        }
 
-        Set<Integer> userFriendIds = userFriends.stream()
-                .map(User::getId)
-                .collect(Collectors.toSet());
+        return count;
+    }
 
-        Set<Integer> otherFriendIds = otherFriends.stream()
-                .map(User::getId)
-                .collect(Collectors.toSet());
+    public List<User> getCommonFriends(int userId, int otherId) {
+        List<User> commonFriends = userStorage.getCommonFriends(userId, otherId);
 
-        userFriendIds.retainAll(otherFriendIds);
+        // Существование пользователей проверяется только если общих друзей нет
+        if (commonFriends.isEmpty()) {
+            getUserById(userId);
+            getUserById(otherId);
+        }
 
-        return userFriendIds.stream()
-                .map(this::getUserById)
-                .toList();
+        return commonFriends;
     }
 }
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Счетчики изменений данных для ETag условных GET-запросов.
+// Хранилища увеличивают счетчики после фиксации записи, а контроллеры берут версию до чтения
+// данных: ответ может оказаться новее своего ETag (лишний повторный запрос клиента),
+// но никогда не старее. Эпоха запуска делает ETag недействительными после перезапуска.
+@Component
+public class ContentVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ReferenceDataCache referenceData;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong popularFilmsVersion = new AtomicLong();
+    private final ConcurrentMap<Integer, Long> filmVersions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ContentVersions(ReferenceDataCache referenceData) {
+        this.referenceData = referenceData;
+    }
+
+    // Создание или изменение фильма: его данные и рейтинг популярности. Созданию тоже нужна
+    // новая версия: ETag, выданный до создания, не должен подтверждать ответ 404
+    public void filmChanged(int filmId) {
+        filmsChanged(List.of(filmId));
+    }
+
+    public void filmsChanged(Collection<Integer> filmIds) {
+        afterCommit(() -> {
+            for (int filmId : filmIds) {
+                filmVersions.put(filmId, sequence.incrementAndGet());
+            }
+            popularFilmsVersion.accumulateAndGet(sequence.incrementAndGet(), Math::max);
+        });
+    }
+
+    // Изменение только рейтинга популярности: лайки
+    public void popularFilmsChanged() {
+        afterCommit(() -> popularFilmsVersion.accumulateAndGet(sequence.incrementAndGet(), Math::max));
+    }
+
+    public String filmEtag(int filmId) {
+        return etag("film-" + filmId, filmVersions.getOrDefault(filmId, 0L));
+    }
+
+    public String popularFilmsEtag() {
+        return etag("popular", popularFilmsVersion.get());
+    }
+
+    public String genresEtag() {
+        return etag("genres", 0);
+    }
+
+    public String mpaEtag() {
+        return etag("mpa", 0);
+    }
+
+    // Названия жанров и рейтингов входят во все ответы, поэтому версия справочников - часть любого ETag
+    private String etag(String resource, long version) {
+        return "\"" + resource + "-" + epoch + "-" + version + "-" + referenceData.getVersion() + "\"";
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Ограниченный кэш сущностей по ID: вытеснение давно не использованных записей (LRU)
+// при превышении размера и устаревание по времени жизни.
+// Сущности изменяемы, поэтому кэш хранит и отдает копии.
+// Метрики в формате Micrometer для кэшей: cache.gets{result=hit|miss}, cache.puts, cache.evictions, cache.size.
+public class EntityCache<V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final UnaryOperator<V> copier;
+    private final LongSupplier clock;
+    private final Lock lock = new ReentrantLock();
+    private final Map<Integer, Entry<V>> entries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter puts;
+    private final Counter evictions;
+
+    // Номер последнего сброса; значение, загруженное до сброса, в кэш не попадает
+    private long invalidations;
+
+    public EntityCache(String name, int maxSize, Duration ttl, UnaryOperator<V> copier,
+            MeterRegistry meterRegistry) {
+        this(name, maxSize, ttl, copier, meterRegistry, System::nanoTime);
+    }
+
+    public EntityCache(String name, int maxSize, Duration ttl, UnaryOperator<V> copier,
+            MeterRegistry meterRegistry, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.copier = copier;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry<V>> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit")
+                .description("Число чтений из кэша").register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss")
+                .description("Число чтений из кэша").register(meterRegistry);
+        this.puts = Counter.builder("cache.puts").tag("cache", name)
+                .description("Число записей в кэш").register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", name)
+                .description("Число вытесненных по размеру записей").register(meterRegistry);
+        Gauge.builder("cache.size", this, EntityCache::size).tag("cache", name)
+                .description("Число записей в кэше").register(meterRegistry);
+    }
+
+    // Значение из кэша или из loader; исключение loader (например, NotFoundException) не кэшируется
+    public V get(int id, IntFunction<V> loader) {
+        long invalidationsBeforeLoad;
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(id);
+            if (entry != null && entry.expiresAt() - clock.getAsLong() > 0) {
+                hits.increment();
+                return copier.apply(entry.value());
+            }
+            if (entry != null) {
+                entries.remove(id);
+            }
+            misses.increment();
+            invalidationsBeforeLoad = invalidations;
+        } finally {
+            lock.unlock();
+        }
+
+        // Загрузка без блокировки: промахи по разным ID не ждут друг друга
+        V value = loader.apply(id);
+
+        lock.lock();
+        try {
+            if (invalidations == invalidationsBeforeLoad) {
+                entries.put(id, new Entry<>(copier.apply(value), clock.getAsLong() + ttlNanos));
+                puts.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return value;
+    }
+
+    // Сброс записи при изменении сущности. Внутри транзакции запись сбрасывается еще раз
+    // после ее завершения: конкурентное чтение могло закэшировать старое значение до фиксации.
+    public void invalidate(int id) {
+        remove(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(id);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+            invalidations++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(int id) {
+        lock.lock();
+        try {
+            entries.remove(id);
+            invalidations++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
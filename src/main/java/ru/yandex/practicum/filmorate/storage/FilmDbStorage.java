@@ -1,37 +1,62 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import io.micrometer.core.annotation.Timed;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component("filmDbStorage")
+@Profile("!in-memory")
+@Timed(value = "filmorate.storage", histogram = true)
 public class FilmDbStorage implements FilmStorage {
 
+    private static final String FILM_SELECT = """
+                SELECT film_id, name, description, release_date, duration, mpa_id
+                FROM films
+            """;
+    private static final int GENRES_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache referenceData;
+    private final ContentVersions contentVersions;
+    private final EntityCache<Film> filmCache;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, ReferenceDataCache referenceData,
+            ContentVersions contentVersions, EntityCache<Film> filmCache) {
         this.jdbcTemplate = jdbcTemplate;
+        this.referenceData = referenceData;
+        this.contentVersions = contentVersions;
+        this.filmCache = filmCache;
     }
 
     // Создание фильма
     @Override
     public Film addFilm(Film film) {
-        validateMpaId(film.getMpa().getId());
-        validateGenreIds(film.getGenres());
+        referenceData.validateMpaId(film.getMpa().getId());
+        referenceData.validateGenreIds(film.getGenres());
 
         String sql = "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -49,15 +74,67 @@ public class FilmDbStorage implements FilmStorage {
 
         film.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
         addGenresToFilm(film);
+        contentVersions.filmChanged(film.getId());
 
         return film;
     }
 
+    // Пакетное создание фильмов (вызывающая сторона отвечает за размер пакета)
+    @Override
+    @Transactional
+    public List<Film> addFilms(List<Film> films) {
+        for (Film film : films) {
+            referenceData.validateMpaId(film.getMpa().getId());
+            referenceData.validateGenreIds(film.getGenres());
+        }
+
+        String sql = "INSERT INTO films (name, description, release_date, duration, mpa_id) VALUES (?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"film_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = films.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setObject(3, film.getReleaseDate());
+                        ps.setInt(4, film.getDuration());
+                        ps.setInt(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).intValue());
+            if (film.getGenres() != null) {
+                film.getGenres().stream()
+                        .map(Genre::getId)
+                        .distinct()
+                        .forEach(genreId -> filmGenres.add(new Object[]{film.getId(), genreId}));
+            }
+        }
+
+        if (!filmGenres.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmGenres);
+        }
+        contentVersions.filmsChanged(films.stream().map(Film::getId).toList());
+
+        return films;
+    }
+
     // Обновление фильма
     @Override
     public Film updateFilm(Film film) {
-        validateMpaId(film.getMpa().getId());
-        validateGenreIds(film.getGenres());
+        referenceData.validateMpaId(film.getMpa().getId());
+        referenceData.validateGenreIds(film.getGenres());
 
         String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_id = ? WHERE film_id = ?";
         int rowsAffected = jdbcTemplate.update(sql,
@@ -74,66 +151,239 @@ public class FilmDbStorage implements FilmStorage {
 
         deleteGenresFromFilm(film.getId());
         addGenresToFilm(film);
+        filmCache.invalidate(film.getId());
+        contentVersions.filmChanged(film.getId());
 
         return film;
     }
 
-    // Получение фильма по ID
+    // Получение фильма по ID. Кэш заполняется с основной базы, а не с реплики:
+    // отставшая реплика закэшировала бы старую версию фильма на все время жизни записи
     @Override
     public Film getFilmById(int id) {
-        String sql = "SELECT * FROM films WHERE film_id = ?";
-        Film film;
-
-        try {
-            film = jdbcTemplate.queryForObject(sql, (rs, rowNum) -> mapRowToFilm(rs), id);
-            Objects.requireNonNull(film).setGenres(getGenresByFilmId(id));
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Фильм с ID " + id + " не найден");
-        }
-
-        return film;
+        return filmCache.get(id, this::loadFilm);
     }
 
     // Получение всех фильмов
     @Override
+    @Transactional(readOnly = true)
     public List<Film> getAllFilms() {
-        String sql = "SELECT * FROM films";
-        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToFilm(rs));
-        films.forEach(film -> film.setGenres(getGenresByFilmId(film.getId())));
+        List<Film> films = jdbcTemplate.query(FILM_SELECT, (rs, rowNum) -> mapRowToFilm(rs));
+        loadGenres(films);
+        return films;
+    }
+
+    // Получение страницы фильмов с ID больше afterId
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        String sql = FILM_SELECT + " WHERE film_id > ? ORDER BY film_id LIMIT ?";
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToFilm(rs), afterId, limit);
+        loadGenres(films);
+        return films;
+    }
+
+    // Получение фильмов по ID в порядке ids (несуществующие пропускаются)
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getFilmsByIds(int[] ids) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < ids.length; from += GENRES_BATCH_SIZE) {
+            Object[] batch = Arrays.stream(ids, from, Math.min(from + GENRES_BATCH_SIZE, ids.length))
+                    .boxed()
+                    .toArray();
+            String sql = FILM_SELECT + " WHERE film_id IN (%s)"
+                    .formatted(String.join(", ", Collections.nCopies(batch.length, "?")));
+
+            jdbcTemplate.query(sql, rs -> {
+                Film film = mapRowToFilm(rs);
+                filmsById.put(film.getId(), film);
+            }, batch);
+        }
+
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (int id : ids) {
+            Film film = filmsById.get(id);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        loadGenres(films);
         return films;
     }
 
-    // Добавление лайка к фильму
+    // Потоковое чтение всех фильмов: один запрос с жанрами, строки обрабатываются по мере чтения
     @Override
-    public void addLike(int filmId, int userId) {
+    @Transactional(readOnly = true)
+    public void forEachFilm(Consumer<Film> action) {
+        String sql = """
+                    SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_id,
+                           fg.genre_id
+                    FROM films f
+                    LEFT JOIN film_genres fg ON f.film_id = fg.film_id
+                    ORDER BY f.film_id, fg.genre_id
+                """;
+
+        jdbcTemplate.query(connection -> StreamingStatements.prepare(connection, sql),
+                (ResultSetExtractor<Void>) rs -> {
+                    Film current = null;
+                    while (rs.next()) {
+                        int filmId = rs.getInt("film_id");
+                        if (current == null || current.getId() != filmId) {
+                            if (current != null) {
+                                action.accept(current);
+                            }
+                            current = mapRowToFilm(rs);
+                            current.setGenres(new ArrayList<>());
+                        }
+                        rs.getInt("genre_id");
+                        if (!rs.wasNull()) {
+                            current.getGenres().add(mapRowToGenre(rs));
+                        }
+                    }
+                    if (current != null) {
+                        action.accept(current);
+                    }
+                    return null;
+                });
+    }
+
+    // Добавление лайка к фильму. Существование фильма и пользователя проверяют внешние ключи:
+    // при их нарушении выбрасывается DataIntegrityViolationException. Повторный лайк игнорируется.
+    @Override
+    @Transactional
+    public boolean addLike(int filmId, int userId) {
         String sql = "INSERT INTO film_likes (film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+        try {
+            jdbcTemplate.update(sql, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        updateLikesCount(filmId, 1);
+        contentVersions.popularFilmsChanged();
+        return true;
     }
 
     // Удаление лайка с фильма
     @Override
-    public void removeLike(int filmId, int userId) {
+    @Transactional
+    public boolean removeLike(int filmId, int userId) {
         String sql = "DELETE FROM film_likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+        if (jdbcTemplate.update(sql, filmId, userId) == 0) {
+            return false;
+        }
+        updateLikesCount(filmId, -1);
+        contentVersions.popularFilmsChanged();
+        return true;
     }
 
-    // Получение самых популярных фильмов (по количеству лайков)
+    // Пакетное применение изменений лайков с пересчетом счетчиков затронутых фильмов.
+    // Каждая пара (фильм, пользователь) должна встречаться в пакете не более одного раза.
     @Override
-    public List<Film> getMostPopularFilms(int count) {
+    @Transactional
+    public void applyLikeChanges(Collection<LikeChange> changes) {
+        List<Object[]> added = new ArrayList<>();
+        List<Object[]> removed = new ArrayList<>();
+        Set<Integer> filmIds = new HashSet<>();
+        for (LikeChange change : changes) {
+            (change.added() ? added : removed).add(new Object[]{change.filmId(), change.userId()});
+            filmIds.add(change.filmId());
+        }
+
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate("MERGE INTO film_likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)",
+                    added);
+        }
+        if (!removed.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM film_likes WHERE film_id = ? AND user_id = ?", removed);
+        }
+
         String sql = """
-                    SELECT f.film_id, f.name, f.description, f.release_date, f.duration, f.mpa_id,
-                           COUNT(fl.user_id) AS likes_count
-                    FROM films f
-                    LEFT JOIN film_likes fl ON f.film_id = fl.film_id
-                    GROUP BY f.film_id
-                    ORDER BY likes_count DESC
-                    LIMIT ?
+                    UPDATE films
+                    SET likes_count = (SELECT COUNT(*) FROM film_likes WHERE film_id = ?)
+                    WHERE film_id = ?
                 """;
+        jdbcTemplate.batchUpdate(sql, filmIds.stream()
+                .map(filmId -> new Object[]{filmId, filmId})
+                .toList());
+        contentVersions.popularFilmsChanged();
+    }
+
+    // Потоковое чтение всех лайков
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachLike(LikeConsumer action) {
+        String sql = "SELECT film_id, user_id FROM film_likes";
+
+        jdbcTemplate.query(connection -> StreamingStatements.prepare(connection, sql),
+                rs -> {
+                    action.accept(rs.getInt("film_id"), rs.getInt("user_id"));
+                });
+    }
+
+    // Потоковое чтение лайков, поставленных начиная с момента since (по индексу film_likes_created_idx)
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachLikeSince(long since, TimedLikeConsumer action) {
+        String sql = "SELECT film_id, user_id, created_at FROM film_likes WHERE created_at >= ?";
+
+        jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = StreamingStatements.prepare(connection, sql);
+                    statement.setObject(1, Instant.ofEpochMilli(since).atOffset(ZoneOffset.UTC));
+                    return statement;
+                },
+                rs -> {
+                    action.accept(rs.getInt("film_id"), rs.getInt("user_id"),
+                            rs.getObject("created_at", OffsetDateTime.class).toInstant().toEpochMilli());
+                });
+    }
+
+    // Получение самых популярных фильмов (по счетчику лайков, через индекс films_likes_count_idx)
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getMostPopularFilms(int count) {
+        String sql = FILM_SELECT + " ORDER BY likes_count DESC, film_id LIMIT ?";
         List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToFilm(rs), count);
-        films.forEach(film -> film.setGenres(getGenresByFilmId(film.getId())));
+        loadGenres(films);
         return films;
     }
 
+    // Пересчет счетчиков лайков по таблице film_likes, возвращает число исправленных фильмов
+    @Transactional
+    public int reconcileLikesCounts() {
+        String sql = """
+                    UPDATE films f
+                    SET likes_count = (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.film_id)
+                    WHERE likes_count <> (SELECT COUNT(*) FROM film_likes fl WHERE fl.film_id = f.film_id)
+                """;
+        int fixed = jdbcTemplate.update(sql);
+        if (fixed > 0) {
+            contentVersions.popularFilmsChanged();
+        }
+        return fixed;
+    }
+
+    // Загрузка фильма из базы в обход кэша
+    private Film loadFilm(int id) {
+        String sql = FILM_SELECT + " WHERE film_id = ?";
+        Film film;
+
+        try {
+            film = jdbcTemplate.queryForObject(sql, (rs, rowNum) -> mapRowToFilm(rs), id);
+            Objects.requireNonNull(film).setGenres(getGenresByFilmId(id));
+        } catch (EmptyResultDataAccessException e) {
+            throw new NotFoundException("Фильм с ID " + id + " не найден");
+        }
+
+        return film;
+    }
+
+    // Изменение счетчика лайков фильма
+    private void updateLikesCount(int filmId, int delta) {
+        String sql = "UPDATE films SET likes_count = likes_count + ? WHERE film_id = ?";
+        jdbcTemplate.update(sql, delta, filmId);
+    }
+
     // Добавление жанра к фильму
     private void addGenresToFilm(Film film) {
         String sql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
@@ -153,95 +403,33 @@ public class FilmDbStorage implements FilmStorage {
         jdbcTemplate.update(sql, filmId);
     }
 
-    // Получение жанра по ID
-    public Genre getGenreById(int genreId) {
-        String sql = "SELECT genre_id, name FROM genres WHERE genre_id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
-                Genre genre = new Genre();
-                genre.setId(rs.getInt("genre_id"));
-                genre.setName(rs.getString("name"));
-                return genre;
-            }, genreId);
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Жанр с ID " + genreId + " не найден");
-        }
-    }
-
-    // Получение всех жанров
-    public List<Genre> getAllGenres() {
-        String sql = "SELECT genre_id, name FROM genres";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getInt("genre_id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        });
-    }
-
     // Получение жанров фильма по ID
     private List<Genre> getGenresByFilmId(int filmId) {
-        String sql = """
-                    SELECT g.genre_id, g.name
-                    FROM genres g
-                    JOIN film_genres fg ON g.genre_id = fg.genre_id
-                    WHERE fg.film_id = ?
-                """;
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getInt("genre_id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        }, filmId);
+        String sql = "SELECT genre_id FROM film_genres WHERE film_id = ? ORDER BY genre_id";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToGenre(rs), filmId);
     }
 
-    // Получение рейтинга MPA по ID
-    public MpaRating getMpaById(int mpaId) {
-        String sql = "SELECT mpa_id, name FROM mpa_ratings WHERE mpa_id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
-                MpaRating mpa = new MpaRating();
-                mpa.setId(rs.getInt("mpa_id"));
-                mpa.setName(rs.getString("name"));
-                return mpa;
-            }, mpaId);
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Рейтинг MPA с ID " + mpaId + " не найден");
+    // Загрузка жанров для списка фильмов (один запрос на каждые GENRES_BATCH_SIZE фильмов)
+    private void loadGenres(List<Film> films) {
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setGenres(new ArrayList<>());
+            filmsById.put(film.getId(), film);
         }
-    }
 
-    // Получение всех рейтингов MPA
-    public List<MpaRating> getAllMpaRatings() {
-        String sql = "SELECT mpa_id, name FROM mpa_ratings";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            MpaRating mpa = new MpaRating();
-            mpa.setId(rs.getInt("mpa_id"));
-            mpa.setName(rs.getString("name"));
-            return mpa;
-        });
-    }
-
-    // Проверка на существование рейтинга MPA по ID
-    private void validateMpaId(int mpaId) {
-        String sql = "SELECT COUNT(*) FROM mpa_ratings WHERE mpa_id = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, mpaId);
-        if (count == null || count == 0) {
-            throw new ValidationException("Рейтинг MPA с ID " + mpaId + " не существует");
-        }
-    }
-
-    // Проверка на существование жанра по ID
-    private void validateGenreIds(List<Genre> genres) {
-        if (genres == null) {
-            return;
-        }
-
-        for (Genre genre : genres) {
-            String sql = "SELECT COUNT(*) FROM genres WHERE genre_id = ?";
-            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, genre.getId());
-            if (count == null || count == 0) {
-                throw new ValidationException("Жанр с ID " + genre.getId() + " не существует");
-            }
+        List<Integer> ids = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < ids.size(); from += GENRES_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + GENRES_BATCH_SIZE, ids.size()));
+            String sql = """
+                        SELECT film_id, genre_id
+                        FROM film_genres
+                        WHERE film_id IN (%s)
+                        ORDER BY film_id, genre_id
+                    """.formatted(String.join(", ", Collections.nCopies(batch.size(), "?")));
+
+            jdbcTemplate.query(sql, rs -> {
+                filmsById.get(rs.getInt("film_id")).getGenres().add(mapRowToGenre(rs));
+            }, batch.toArray());
         }
     }
 
@@ -257,9 +445,18 @@ public class FilmDbStorage implements FilmStorage {
         int mpaId = rs.getInt("mpa_id");
         MpaRating mpa = new MpaRating();
         mpa.setId(mpaId);
-        mpa.setName(getMpaById(mpaId).getName());
+        mpa.setName(referenceData.getMpaName(mpaId));
         film.setMpa(mpa);
 
         return film;
     }
+
+    // Маппинг данных в объект Genre (название берется из справочника)
+    private Genre mapRowToGenre(ResultSet rs) throws SQLException {
+        int genreId = rs.getInt("genre_id");
+        Genre genre = new Genre();
+        genre.setId(genreId);
+        genre.setName(referenceData.getGenreName(genreId));
+        return genre;
+    }
 }
@@ -1,21 +1,51 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Film addFilm(Film film);
 
+    List<Film> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     Film getFilmById(int id);
 
     List<Film> getAllFilms();
 
-    void addLike(int filmId, int userId);
+    List<Film> getFilmsPage(int afterId, int limit);
+
+    List<Film> getFilmsByIds(int[] ids);
+
+    void forEachFilm(Consumer<Film> action);
+
+    // Возвращает false, если лайк уже был
+    boolean addLike(int filmId, int userId);
+
+    // Возвращает false, если лайка не было
+    boolean removeLike(int filmId, int userId);
 
-    void removeLike(int filmId, int userId);
+    void applyLikeChanges(Collection<LikeChange> changes);
+
+    void forEachLike(LikeConsumer action);
+
+    // Лайки, поставленные не раньше момента since (миллисекунды от начала эпохи)
+    void forEachLikeSince(long since, TimedLikeConsumer action);
 
     List<Film> getMostPopularFilms(int count);
+
+    @FunctionalInterface
+    interface LikeConsumer {
+        void accept(int filmId, int userId);
+    }
+
+    @FunctionalInterface
+    interface TimedLikeConsumer {
+        void accept(int filmId, int userId, long likedAt);
+    }
 }
@@ -0,0 +1,281 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Граф дружбы в памяти для UserDbStorage.
+// Основа - неизменяемые массивы в формате CSR: друзья пользователя u лежат в targets
+// на отрезке [offsets[u], offsets[u + 1]) по возрастанию ID. Изменения после загрузки
+// копятся в наложении (добавленные и удаленные связи по пользователям) и вливаются
+// в основу, когда наложение становится сопоставимым с ней по размеру.
+// Друзьями пользователя считаются те, кого он добавил сам, и те, кто добавил его
+// с подтверждением (is_confirmed), как в запросах к friendships. Поэтому удаление
+// подтвержденной строки меняет связи в обе стороны, и хранилище передает состояние пары
+// целиком (setFriendship), а не отдельную связь.
+@Component
+@Profile("!in-memory")
+public class FriendGraphIndex {
+
+    private static final int[] EMPTY = new int[0];
+    private static final int MIN_COMPACTION_THRESHOLD = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int[] offsets = new int[1];
+    private int[] targets = EMPTY;
+    private final Map<Integer, IntHashSet> added = new HashMap<>();
+    private final Map<Integer, IntHashSet> removed = new HashMap<>();
+    private int overlaySize;
+
+    @Autowired
+    public FriendGraphIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        reload();
+    }
+
+    // Полная перезагрузка графа из таблицы friendships
+    public void reload() {
+        // Пары (пользователь, друг) упакованы в long: после сортировки они идут строками CSR
+        long[][] pairs = {new long[1024]};
+        int[] pairCount = {0};
+        jdbcTemplate.query(connection -> StreamingStatements.prepare(connection, """
+                        SELECT user_id, friend_id FROM friendships
+                        UNION
+                        SELECT friend_id, user_id FROM friendships WHERE is_confirmed = true
+                        """),
+                rs -> {
+                    if (pairCount[0] == pairs[0].length) {
+                        pairs[0] = Arrays.copyOf(pairs[0], pairCount[0] * 2);
+                    }
+                    pairs[0][pairCount[0]++] = ((long) rs.getInt(1) << 32) | rs.getInt(2);
+                });
+
+        long[] sorted = Arrays.copyOf(pairs[0], pairCount[0]);
+        Arrays.sort(sorted);
+        int maxUserId = sorted.length == 0 ? 0 : (int) (sorted[sorted.length - 1] >>> 32);
+        int[] newOffsets = new int[maxUserId + 2];
+        int[] newTargets = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            newTargets[i] = (int) sorted[i];
+            newOffsets[(int) (sorted[i] >>> 32) + 1]++;
+        }
+        for (int u = 1; u < newOffsets.length; u++) {
+            newOffsets[u] += newOffsets[u - 1];
+        }
+
+        lock.writeLock().lock();
+        try {
+            offsets = newOffsets;
+            targets = newTargets;
+            added.clear();
+            removed.clear();
+            overlaySize = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Учет новой связи: friendId становится другом userId
+    public void addFriend(int userId, int friendId) {
+        lock.writeLock().lock();
+        try {
+            link(userId, friendId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Учет удаления связи
+    public void removeFriend(int userId, int friendId) {
+        lock.writeLock().lock();
+        try {
+            unlink(userId, friendId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Состояние пары после изменения friendships: кто из двоих числится другом другого
+    public void setFriendship(int userId, int friendId, boolean userHasFriend, boolean friendHasUser) {
+        lock.writeLock().lock();
+        try {
+            setLink(userId, friendId, userHasFriend);
+            setLink(friendId, userId, friendHasUser);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой записи
+    private void setLink(int userId, int friendId, boolean linked) {
+        if (linked) {
+            link(userId, friendId);
+        } else {
+            unlink(userId, friendId);
+        }
+    }
+
+    // Вызывается под блокировкой записи
+    private void link(int userId, int friendId) {
+        IntHashSet removedIds = removed.get(userId);
+        if (removedIds != null && removedIds.remove(friendId)) {
+            overlaySize--;
+        } else if (!containsInBase(userId, friendId)
+                && added.computeIfAbsent(userId, id -> new IntHashSet()).add(friendId)) {
+            overlaySize++;
+        }
+    }
+
+    // Вызывается под блокировкой записи
+    private void unlink(int userId, int friendId) {
+        IntHashSet addedIds = added.get(userId);
+        if (addedIds != null && addedIds.remove(friendId)) {
+            overlaySize--;
+        } else if (containsInBase(userId, friendId)
+                && removed.computeIfAbsent(userId, id -> new IntHashSet()).add(friendId)) {
+            overlaySize++;
+        }
+    }
+
+    // ID друзей пользователя по возрастанию
+    public int[] getFriendIds(int userId) {
+        lock.readLock().lock();
+        try {
+            return friendIds(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Общие друзья двух пользователей по возрастанию ID
+    public int[] getCommonFriendIds(int userId, int otherId) {
+        int[] userFriendIds;
+        int[] otherFriendIds;
+        lock.readLock().lock();
+        try {
+            userFriendIds = friendIds(userId);
+            otherFriendIds = friendIds(otherId);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int[] common = new int[Math.min(userFriendIds.length, otherFriendIds.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < userFriendIds.length && j < otherFriendIds.length) {
+            if (userFriendIds[i] < otherFriendIds[j]) {
+                i++;
+            } else if (userFriendIds[i] > otherFriendIds[j]) {
+                j++;
+            } else {
+                common[size++] = userFriendIds[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    // Количество друзей пользователя
+    public int getFriendsCount(int userId) {
+        lock.readLock().lock();
+        try {
+            IntHashSet addedIds = added.get(userId);
+            IntHashSet removedIds = removed.get(userId);
+            return baseDegree(userId)
+                    + (addedIds == null ? 0 : addedIds.size())
+                    - (removedIds == null ? 0 : removedIds.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой
+    private int[] friendIds(int userId) {
+        int from = baseFrom(userId);
+        int to = baseTo(userId);
+        IntHashSet addedIds = added.get(userId);
+        IntHashSet removedIds = removed.get(userId);
+        if (addedIds == null && removedIds == null) {
+            return from == to ? EMPTY : Arrays.copyOfRange(targets, from, to);
+        }
+
+        int[] extra = addedIds == null ? EMPTY : addedIds.toSortedArray();
+        int[] result = new int[to - from + extra.length];
+        int size = 0;
+        int i = from;
+        int j = 0;
+        while (i < to || j < extra.length) {
+            int next;
+            if (j == extra.length || (i < to && targets[i] < extra[j])) {
+                next = targets[i++];
+                if (removedIds != null && removedIds.contains(next)) {
+                    continue;
+                }
+            } else {
+                next = extra[j++];
+            }
+            result[size++] = next;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private boolean containsInBase(int userId, int friendId) {
+        int from = baseFrom(userId);
+        int to = baseTo(userId);
+        return from < to && Arrays.binarySearch(targets, from, to, friendId) >= 0;
+    }
+
+    private int baseDegree(int userId) {
+        return baseTo(userId) - baseFrom(userId);
+    }
+
+    private int baseFrom(int userId) {
+        return userId > 0 && userId + 1 < offsets.length ? offsets[userId] : 0;
+    }
+
+    private int baseTo(int userId) {
+        return userId > 0 && userId + 1 < offsets.length ? offsets[userId + 1] : 0;
+    }
+
+    // Вливание наложения в основу (вызывается под блокировкой записи)
+    private void compactIfNeeded() {
+        if (overlaySize < Math.max(MIN_COMPACTION_THRESHOLD, targets.length / 8)) {
+            return;
+        }
+
+        int maxUserId = offsets.length - 2;
+        for (Integer userId : added.keySet()) {
+            maxUserId = Math.max(maxUserId, userId);
+        }
+
+        int[] newOffsets = new int[maxUserId + 2];
+        int[] newTargets = new int[targets.length + overlaySize];
+        int size = 0;
+        for (int userId = 1; userId <= maxUserId; userId++) {
+            newOffsets[userId] = size;
+            int[] ids = friendIds(userId);
+            System.arraycopy(ids, 0, newTargets, size, ids.length);
+            size += ids.length;
+        }
+        newOffsets[maxUserId + 1] = size;
+
+        offsets = newOffsets;
+        targets = size == newTargets.length ? newTargets : Arrays.copyOf(newTargets, size);
+        added.clear();
+        removed.clear();
+        overlaySize = 0;
+    }
+}
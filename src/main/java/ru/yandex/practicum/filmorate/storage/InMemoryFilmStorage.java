@@ -1,33 +1,99 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import io.micrometer.core.annotation.Timed;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.MpaRating;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component("inMemoryFilmStorage")
+@Profile("in-memory")
+@Timed(value = "filmorate.storage", histogram = true)
 public class InMemoryFilmStorage implements FilmStorage {
 
-    private final Map<Integer, Film> films = new HashMap<>();
-    private final Map<Integer, Set<Integer>> filmLikes = new HashMap<>();
-    private int idCounter = 1;
+    private final ConcurrentNavigableMap<Integer, Film> films = new ConcurrentSkipListMap<>();
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
+    // Лайки фильма: ID пользователя -> минута лайка от начала эпохи (int хватит до 6000 года)
+    private final ConcurrentMap<Integer, IntIntHashMap> filmLikes = new ConcurrentHashMap<>();
+    private final AtomicInteger idCounter = new AtomicInteger();
+    private final ReferenceDataCache referenceData;
+    private final ContentVersions contentVersions;
+    private final UserStorage userStorage;
+    private final Optional<StorageJournal> journal;
+
+    public InMemoryFilmStorage(ReferenceDataCache referenceData, ContentVersions contentVersions,
+            UserStorage userStorage) {
+        this(referenceData, contentVersions, userStorage, Optional.empty());
+    }
+
+    @Autowired
+    public InMemoryFilmStorage(ReferenceDataCache referenceData, ContentVersions contentVersions,
+            UserStorage userStorage, Optional<StorageJournal> journal) {
+        this.referenceData = referenceData;
+        this.contentVersions = contentVersions;
+        this.userStorage = userStorage;
+        this.journal = journal;
+    }
+
+    // Изменение и запись в журнал выполняются под блокировкой лайков фильма, чтобы порядок операций
+    // над фильмом в журнале совпадал с порядком в памяти; ожидание fsync - уже после блокировки
     @Override
     public Film addFilm(Film film) {
-        film.setId(idCounter++);
-        films.put(film.getId(), film);
-        filmLikes.put(film.getId(), new HashSet<>());
+        prepareFilm(film);
+        film.setId(idCounter.incrementAndGet());
+        IntIntHashMap likes = new IntIntHashMap();
+        long position;
+        synchronized (likes) {
+            filmLikes.put(film.getId(), likes);
+            films.put(film.getId(), film);
+            position = log(new JournalRecord.FilmPut(film));
+        }
+        sync(position);
+        contentVersions.filmChanged(film.getId());
         return film;
     }
 
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        films.forEach(this::prepareFilm);
+        films.forEach(this::addFilm);
+        return films;
+    }
+
     @Override
     public Film updateFilm(Film film) {
-        films.put(film.getId(), film);
+        prepareFilm(film);
+        IntIntHashMap likes = getLikes(film.getId());
+        long position;
+        synchronized (likes) {
+            films.put(film.getId(), film);
+            position = log(new JournalRecord.FilmPut(film));
+        }
+        sync(position);
+        contentVersions.filmChanged(film.getId());
         return film;
     }
 
     @Override
     public Film getFilmById(int id) {
-        return films.get(id);
+        Film film = films.get(id);
+        if (film == null) {
+            throw new NotFoundException("Фильм с ID " + id + " не найден");
+        }
+        return film;
     }
 
     @Override
@@ -36,31 +102,200 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        Set<Integer> likes = filmLikes.get(filmId);
-        if (likes != null) {
-            likes.add(userId);
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(int[] ids) {
+        List<Film> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        films.values().forEach(action);
+    }
+
+    // Проверка пользователя заменяет внешний ключ film_likes.user_id из UserDbStorage
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        IntIntHashMap likes = getLikes(filmId);
+        userStorage.getUserById(userId);
+        int likedAt = (int) (System.currentTimeMillis() / MINUTE_MILLIS);
+        boolean added;
+        long position = 0;
+        synchronized (likes) {
+            added = likes.get(userId) == 0;
+            if (added) {
+                likes.addTo(userId, likedAt);
+                position = log(new JournalRecord.LikeAdded(filmId, userId, likedAt));
+            }
+        }
+        if (added) {
+            sync(position);
+            contentVersions.popularFilmsChanged();
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        IntIntHashMap likes = getLikes(filmId);
+        boolean removed;
+        long position = 0;
+        synchronized (likes) {
+            int likedAt = likes.get(userId);
+            removed = likedAt != 0;
+            if (removed) {
+                likes.addTo(userId, -likedAt);
+                position = log(new JournalRecord.LikeRemoved(filmId, userId));
+            }
         }
+        if (removed) {
+            sync(position);
+            contentVersions.popularFilmsChanged();
+        }
+        return removed;
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
-        Set<Integer> likes = filmLikes.get(filmId);
-        if (likes != null) {
-            likes.remove(userId);
+    public void applyLikeChanges(Collection<LikeChange> changes) {
+        for (LikeChange change : changes) {
+            if (change.added()) {
+                addLike(change.filmId(), change.userId());
+            } else {
+                removeLike(change.filmId(), change.userId());
+            }
         }
     }
 
+    @Override
+    public void forEachLike(LikeConsumer action) {
+        forEachLikeSince(0, (filmId, userId, likedAt) -> action.accept(filmId, userId));
+    }
+
+    @Override
+    public void forEachLikeSince(long since, TimedLikeConsumer action) {
+        // Минута, в которую попадает since, целиком: точнее время лайка не хранится
+        long sinceMinute = since / MINUTE_MILLIS;
+        filmLikes.forEach((filmId, likes) -> {
+            List<int[]> selected = new ArrayList<>();
+            synchronized (likes) {
+                likes.forEach((userId, likedAt) -> {
+                    if (likedAt >= sinceMinute) {
+                        selected.add(new int[]{userId, likedAt});
+                    }
+                });
+            }
+            for (int[] like : selected) {
+                action.accept(filmId, like[0], like[1] * MINUTE_MILLIS);
+            }
+        });
+    }
+
+    // Частичная сортировка: в куче хранятся только count самых популярных фильмов
     @Override
     public List<Film> getMostPopularFilms(int count) {
-        return films.values().stream()
-                .sorted(Comparator.comparingInt(this::getLikesCount)
-                        .reversed())
-                .limit(count)
-                .toList();
+        Comparator<Film> byPopularity = Comparator.comparingInt(this::getLikesCount)
+                .thenComparing(Film::getId, Comparator.reverseOrder());
+        PriorityQueue<Film> top = new PriorityQueue<>(count + 1, byPopularity);
+        for (Film film : films.values()) {
+            top.offer(film);
+            if (top.size() > count) {
+                top.poll();
+            }
+        }
+
+        List<Film> result = new ArrayList<>(top);
+        result.sort(byPopularity.reversed());
+        return result;
+    }
+
+    // Применение операции журнала при восстановлении. Операции задают итоговое состояние, поэтому
+    // повторное применение (журнал поверх снимка, снятого во время записи) ничего не меняет
+    public void replay(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.FilmPut(Film film) -> {
+                prepareFilm(film);
+                idCounter.accumulateAndGet(film.getId(), Math::max);
+                filmLikes.putIfAbsent(film.getId(), new IntIntHashMap());
+                films.put(film.getId(), film);
+            }
+            case JournalRecord.LikeAdded(int filmId, int userId, int likedAt) -> {
+                IntIntHashMap likes = filmLikes.computeIfAbsent(filmId, id -> new IntIntHashMap());
+                likes.addTo(userId, likedAt - likes.get(userId));
+            }
+            case JournalRecord.LikeRemoved(int filmId, int userId) -> {
+                IntIntHashMap likes = filmLikes.get(filmId);
+                if (likes != null) {
+                    likes.addTo(userId, -likes.get(userId));
+                }
+            }
+            default -> throw new IllegalArgumentException("Операция не относится к фильмам: " + record);
+        }
+    }
+
+    // Операции, воспроизводящие текущее состояние, для снимка журнала
+    public void snapshot(Consumer<JournalRecord> sink) {
+        films.forEach((filmId, film) -> {
+            IntIntHashMap likes = filmLikes.get(filmId);
+            List<JournalRecord> records = new ArrayList<>();
+            synchronized (likes) {
+                records.add(new JournalRecord.FilmPut(films.get(filmId)));
+                likes.forEach((userId, likedAt) -> records.add(new JournalRecord.LikeAdded(filmId, userId, likedAt)));
+            }
+            records.forEach(sink);
+        });
+    }
+
+    private long log(JournalRecord record) {
+        return journal.map(value -> value.append(record)).orElse(0L);
+    }
+
+    private void sync(long position) {
+        journal.ifPresent(value -> value.awaitDurable(position));
+    }
+
+    private IntIntHashMap getLikes(int filmId) {
+        IntIntHashMap likes = filmLikes.get(filmId);
+        if (likes == null) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        return likes;
     }
 
     private int getLikesCount(Film film) {
-        return filmLikes.getOrDefault(film.getId(), Collections.emptySet()).size();
+        IntIntHashMap likes = filmLikes.get(film.getId());
+        if (likes == null) {
+            return 0;
+        }
+        synchronized (likes) {
+            return likes.size();
+        }
+    }
+
+    // Проверка справочных данных и заполнение названий жанров и рейтинга
+    private void prepareFilm(Film film) {
+        referenceData.validateMpaId(film.getMpa().getId());
+        referenceData.validateGenreIds(film.getGenres());
+
+        film.setMpa(referenceData.getMpaById(film.getMpa().getId()));
+        if (film.getGenres() != null) {
+            film.setGenres(film.getGenres().stream()
+                    .map(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .map(referenceData::getGenreById)
+                    .toList());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Сохранение хранилищ в памяти между перезапусками: при старте состояние восстанавливается
+// из снимка и журнала, периодически снимается новый снимок, а устаревший журнал удаляется
+@Component
+@Profile("in-memory")
+@ConditionalOnProperty("filmorate.in-memory.data-dir")
+public class InMemoryPersistence {
+
+    private final StorageJournal journal;
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+
+    @Autowired
+    public InMemoryPersistence(StorageJournal journal, InMemoryFilmStorage filmStorage,
+            InMemoryUserStorage userStorage) {
+        this.journal = journal;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+    }
+
+    @PostConstruct
+    public void recover() {
+        journal.recover(record -> {
+            switch (record) {
+                case JournalRecord.UserPut ignored -> userStorage.replay(record);
+                case JournalRecord.FriendAdded ignored -> userStorage.replay(record);
+                case JournalRecord.FriendRemoved ignored -> userStorage.replay(record);
+                default -> filmStorage.replay(record);
+            }
+        });
+    }
+
+    // Пользователи пишутся первыми: при восстановлении лайки и дружба ссылаются на них
+    @Scheduled(fixedDelayString = "${filmorate.in-memory.snapshot-interval-ms:600000}",
+            initialDelayString = "${filmorate.in-memory.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        journal.snapshot(sink -> {
+            userStorage.snapshot(sink);
+            filmStorage.snapshot(sink);
+        });
+    }
+}
@@ -1,33 +1,79 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import io.micrometer.core.annotation.Timed;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component("inMemoryUserStorage")
+@Profile("in-memory")
+@Timed(value = "filmorate.storage", histogram = true)
 public class InMemoryUserStorage implements UserStorage {
 
-    private final Map<Integer, User> users = new HashMap<>();
-    private final Map<Integer, Set<Integer>> userFriends = new HashMap<>();
-    private int idCounter = 1;
+    private final ConcurrentNavigableMap<Integer, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Integer, IntHashSet> userFriends = new ConcurrentHashMap<>();
+    private final AtomicInteger idCounter = new AtomicInteger();
+    private final Optional<StorageJournal> journal;
 
+    public InMemoryUserStorage() {
+        this(Optional.empty());
+    }
+
+    @Autowired
+    public InMemoryUserStorage(Optional<StorageJournal> journal) {
+        this.journal = journal;
+    }
+
+    // Изменения пользователя и его дружбы записываются в журнал под блокировкой множества друзей,
+    // как лайки в InMemoryFilmStorage
     @Override
     public User createUser(User user) {
-        user.setId(idCounter++);
-        users.put(user.getId(), user);
-        userFriends.put(user.getId(), new HashSet<>());
+        user.setId(idCounter.incrementAndGet());
+        IntHashSet friends = new IntHashSet();
+        long position;
+        synchronized (friends) {
+            userFriends.put(user.getId(), friends);
+            users.put(user.getId(), user);
+            position = log(new JournalRecord.UserPut(user));
+        }
+        sync(position);
         return user;
     }
 
+    @Override
+    public List<User> createUsers(List<User> users) {
+        users.forEach(this::createUser);
+        return users;
+    }
+
     @Override
     public User updateUser(User user) {
-        users.put(user.getId(), user);
+        IntHashSet friends = getFriendIds(user.getId());
+        long position;
+        synchronized (friends) {
+            users.put(user.getId(), user);
+            position = log(new JournalRecord.UserPut(user));
+        }
+        sync(position);
         return user;
     }
 
     @Override
     public User getUserById(int id) {
-        return users.get(id);
+        User user = users.get(id);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+        return user;
     }
 
     @Override
@@ -35,29 +81,53 @@ public class InMemoryUserStorage implements UserStorage {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void forEachUser(Consumer<User> action) {
+        users.values().forEach(action);
+    }
+
+    // Дружба односторонняя, как и в UserDbStorage
     @Override
     public void addFriend(int userId, int friendId) {
-        if (users.containsKey(userId) && users.containsKey(friendId)) {
-            userFriends.get(userId).add(friendId);
-            userFriends.get(friendId).add(userId);
+        getUserById(friendId);
+        IntHashSet friends = getFriendIds(userId);
+        long position = 0;
+        synchronized (friends) {
+            if (friends.add(friendId)) {
+                position = log(new JournalRecord.FriendAdded(userId, friendId));
+            }
         }
+        sync(position);
     }
 
     @Override
-    public void removeFriend(int userId, int friendId) {
-        if (userFriends.containsKey(userId)) {
-            userFriends.get(userId).remove(friendId);
-        }
-        if (userFriends.containsKey(friendId)) {
-            userFriends.get(friendId).remove(userId);
+    public boolean removeFriend(int userId, int friendId) {
+        IntHashSet friends = getFriendIds(userId);
+        boolean removed;
+        long position = 0;
+        synchronized (friends) {
+            removed = friends.remove(friendId);
+            if (removed) {
+                position = log(new JournalRecord.FriendRemoved(userId, friendId));
+            }
         }
+        sync(position);
+        return removed;
     }
 
     @Override
     public List<User> getFriends(int userId) {
-        Set<Integer> friendsIds = userFriends.getOrDefault(userId, Collections.emptySet());
-        List<User> friends = new ArrayList<>();
-        for (int friendId : friendsIds) {
+        int[] ids = getSortedFriendIds(userId);
+
+        List<User> friends = new ArrayList<>(ids.length);
+        for (int friendId : ids) {
             User friend = users.get(friendId);
             if (friend != null) {
                 friends.add(friend);
@@ -65,4 +135,94 @@ public class InMemoryUserStorage implements UserStorage {
         }
         return friends;
     }
+
+    // Пересечение отсортированных массивов ID друзей
+    @Override
+    public List<User> getCommonFriends(int userId, int otherId) {
+        int[] userFriendIds = getSortedFriendIds(userId);
+        int[] otherFriendIds = getSortedFriendIds(otherId);
+
+        List<User> common = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < userFriendIds.length && j < otherFriendIds.length) {
+            if (userFriendIds[i] < otherFriendIds[j]) {
+                i++;
+            } else if (userFriendIds[i] > otherFriendIds[j]) {
+                j++;
+            } else {
+                User friend = users.get(userFriendIds[i]);
+                if (friend != null) {
+                    common.add(friend);
+                }
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+
+    @Override
+    public int getFriendsCount(int userId) {
+        IntHashSet friendIds = getFriendIds(userId);
+        synchronized (friendIds) {
+            return friendIds.size();
+        }
+    }
+
+    // Применение операции журнала при восстановлении, см. InMemoryFilmStorage.replay
+    public void replay(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.UserPut(User user) -> {
+                idCounter.accumulateAndGet(user.getId(), Math::max);
+                userFriends.putIfAbsent(user.getId(), new IntHashSet());
+                users.put(user.getId(), user);
+            }
+            case JournalRecord.FriendAdded(int userId, int friendId) ->
+                    userFriends.computeIfAbsent(userId, id -> new IntHashSet()).add(friendId);
+            case JournalRecord.FriendRemoved(int userId, int friendId) -> {
+                IntHashSet friends = userFriends.get(userId);
+                if (friends != null) {
+                    friends.remove(friendId);
+                }
+            }
+            default -> throw new IllegalArgumentException("Операция не относится к пользователям: " + record);
+        }
+    }
+
+    // Операции, воспроизводящие текущее состояние, для снимка журнала
+    public void snapshot(Consumer<JournalRecord> sink) {
+        users.forEach((userId, user) -> {
+            IntHashSet friends = userFriends.get(userId);
+            List<JournalRecord> records = new ArrayList<>();
+            synchronized (friends) {
+                records.add(new JournalRecord.UserPut(users.get(userId)));
+                friends.forEach(friendId -> records.add(new JournalRecord.FriendAdded(userId, friendId)));
+            }
+            records.forEach(sink);
+        });
+    }
+
+    private long log(JournalRecord record) {
+        return journal.map(value -> value.append(record)).orElse(0L);
+    }
+
+    private void sync(long position) {
+        journal.ifPresent(value -> value.awaitDurable(position));
+    }
+
+    private int[] getSortedFriendIds(int userId) {
+        IntHashSet friendIds = getFriendIds(userId);
+        synchronized (friendIds) {
+            return friendIds.toSortedArray();
+        }
+    }
+
+    private IntHashSet getFriendIds(int userId) {
+        IntHashSet friends = userFriends.get(userId);
+        if (friends == null) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+        return friends;
+    }
 }
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Множество положительных int без упаковки (открытая адресация, линейное пробирование).
+// Не потокобезопасно: синхронизацию обеспечивает владелец множества.
+public class IntHashSet {
+
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] table;
+    private int size;
+
+    public IntHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntHashSet(int expectedSize) {
+        table = new int[tableSizeFor(expectedSize)];
+    }
+
+    public boolean add(int value) {
+        checkValue(value);
+        int mask = table.length - 1;
+        int index = hash(value) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        if (++size * 4 > table.length * 3) {
+            resize(table.length * 2);
+        }
+        return true;
+    }
+
+    public boolean remove(int value) {
+        checkValue(value);
+        int mask = table.length - 1;
+        int index = hash(value) & mask;
+        while (table[index] != value) {
+            if (table[index] == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = EMPTY;
+        size--;
+
+        // Сдвиг последующих элементов цепочки, чтобы не оставлять "дыр" при поиске
+        int next = (index + 1) & mask;
+        while (table[next] != EMPTY) {
+            int home = hash(table[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                table[index] = table[next];
+                table[next] = EMPTY;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value <= 0) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int index = hash(value) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int value : table) {
+            if (value != EMPTY) {
+                action.accept(value);
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] result = new int[size];
+        int i = 0;
+        for (int value : table) {
+            if (value != EMPTY) {
+                result[i++] = value;
+            }
+        }
+        return result;
+    }
+
+    public int[] toSortedArray() {
+        int[] result = toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void resize(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        size = 0;
+        for (int value : old) {
+            if (value != EMPTY) {
+                add(value);
+            }
+        }
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static void checkValue(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Поддерживаются только положительные значения: " + value);
+        }
+    }
+}
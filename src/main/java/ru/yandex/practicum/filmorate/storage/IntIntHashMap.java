@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.storage;
+
+// Отображение положительных int в int без упаковки (открытая адресация, линейное пробирование).
+// Записи с нулевым значением удаляются. Не потокобезопасно: синхронизацию обеспечивает владелец.
+public class IntIntHashMap {
+
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 4;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public int get(int key) {
+        if (key <= 0) {
+            return 0;
+        }
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return 0;
+    }
+
+    // Прибавление delta к значению ключа; возвращает новое значение
+    public int addTo(int key, int delta) {
+        checkKey(key);
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                values[index] += delta;
+                int value = values[index];
+                if (value == 0) {
+                    removeAt(index);
+                }
+                return value;
+            }
+            index = (index + 1) & mask;
+        }
+        if (delta == 0) {
+            return 0;
+        }
+        keys[index] = key;
+        values[index] = delta;
+        if (++size * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        return delta;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void removeAt(int index) {
+        int mask = keys.length - 1;
+        keys[index] = EMPTY;
+        values[index] = 0;
+        size--;
+
+        // Сдвиг последующих элементов цепочки, чтобы не оставлять "дыр" при поиске
+        int next = (index + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                keys[next] = EMPTY;
+                values[next] = 0;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                addTo(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static void checkKey(int key) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Поддерживаются только положительные ключи: " + key);
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+// Операции журнала хранилищ в памяти. Каждая операция задает итоговое состояние своего ключа
+// (фильм целиком, наличие лайка или дружбы), поэтому повторное применение ничего не меняет:
+// журнал можно накатывать поверх снимка, снятого во время записи.
+public sealed interface JournalRecord {
+
+    // Создание или изменение фильма
+    record FilmPut(Film film) implements JournalRecord {
+    }
+
+    // Создание или изменение пользователя
+    record UserPut(User user) implements JournalRecord {
+    }
+
+    // likedAt - минута лайка от начала эпохи
+    record LikeAdded(int filmId, int userId, int likedAt) implements JournalRecord {
+    }
+
+    record LikeRemoved(int filmId, int userId) implements JournalRecord {
+    }
+
+    record FriendAdded(int userId, int friendId) implements JournalRecord {
+    }
+
+    record FriendRemoved(int userId, int friendId) implements JournalRecord {
+    }
+}
@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+
+// Справочники жанров и рейтингов MPA, загруженные в память
+@Component
+public class ReferenceDataCache {
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public ReferenceDataCache(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        reload();
+    }
+
+    // Перечитывание справочников из базы данных
+    public synchronized void reload() {
+        Map<Integer, String> genres = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT genre_id, name FROM genres ORDER BY genre_id",
+                rs -> {
+                    genres.put(rs.getInt("genre_id"), rs.getString("name"));
+                });
+
+        Map<Integer, String> mpaRatings = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT mpa_id, name FROM mpa_ratings ORDER BY mpa_id",
+                rs -> {
+                    mpaRatings.put(rs.getInt("mpa_id"), rs.getString("name"));
+                });
+
+        long version = snapshot == null ? 1 : snapshot.version() + 1;
+        snapshot = new Snapshot(Collections.unmodifiableMap(genres),
+                Collections.unmodifiableMap(mpaRatings), version);
+    }
+
+    // Версия справочников, увеличивается при каждой перезагрузке
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    // Получение жанра по ID
+    public Genre getGenreById(int genreId) {
+        String name = snapshot.genres().get(genreId);
+        if (name == null) {
+            throw new NotFoundException("Жанр с ID " + genreId + " не найден");
+        }
+        return new Genre(genreId, name);
+    }
+
+    // Получение всех жанров
+    public List<Genre> getAllGenres() {
+        return snapshot.genres().entrySet().stream()
+                .map(entry -> new Genre(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    // Получение рейтинга MPA по ID
+    public MpaRating getMpaById(int mpaId) {
+        String name = snapshot.mpaRatings().get(mpaId);
+        if (name == null) {
+            throw new NotFoundException("Рейтинг MPA с ID " + mpaId + " не найден");
+        }
+        return new MpaRating(mpaId, name);
+    }
+
+    // Получение всех рейтингов MPA
+    public List<MpaRating> getAllMpaRatings() {
+        return snapshot.mpaRatings().entrySet().stream()
+                .map(entry -> new MpaRating(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    // Название жанра по ID (null, если жанр не существует)
+    public String getGenreName(int genreId) {
+        return snapshot.genres().get(genreId);
+    }
+
+    // Название рейтинга MPA по ID (null, если рейтинг не существует)
+    public String getMpaName(int mpaId) {
+        return snapshot.mpaRatings().get(mpaId);
+    }
+
+    // Проверка на существование рейтинга MPA по ID
+    public void validateMpaId(int mpaId) {
+        if (!snapshot.mpaRatings().containsKey(mpaId)) {
+            throw new ValidationException("Рейтинг MPA с ID " + mpaId + " не существует");
+        }
+    }
+
+    // Проверка на существование жанров по ID
+    public void validateGenreIds(List<Genre> genres) {
+        if (genres == null) {
+            return;
+        }
+
+        Map<Integer, String> known = snapshot.genres();
+        for (Genre genre : genres) {
+            if (!known.containsKey(genre.getId())) {
+                throw new ValidationException("Жанр с ID " + genre.getId() + " не существует");
+            }
+        }
+    }
+
+    private record Snapshot(Map<Integer, String> genres, Map<Integer, String> mpaRatings,
+            long version) {
+    }
+}
@@ -0,0 +1,664 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// Журнал операций хранилищ в памяти со снимками состояния.
+// Файлы каталога filmorate.in-memory.data-dir:
+//   journal-<N>.log  - сегменты журнала, операции дописываются в последний;
+//   snapshot-<N>.bin - снимок, снятый при переходе на сегмент N. Снимок и сегменты >= N
+//                      восстанавливают состояние, более старые файлы удаляются.
+// Запись в файле: длина данных (int), CRC32 данных (int), тип операции (byte), поля.
+// Операции копятся в буфере, фоновый поток пишет накопленное одним вызовом и выполняет fsync
+// на всю пачку (групповая фиксация): append возвращает позицию операции, awaitDurable ждет,
+// пока она окажется на диске.
+@Slf4j
+@Component
+@Profile("in-memory")
+@ConditionalOnProperty("filmorate.in-memory.data-dir")
+public class StorageJournal {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 24;
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+
+    private static final byte FILM_PUT = 1;
+    private static final byte USER_PUT = 2;
+    private static final byte LIKE_ADDED = 3;
+    private static final byte LIKE_REMOVED = 4;
+    private static final byte FRIEND_ADDED = 5;
+    private static final byte FRIEND_REMOVED = 6;
+    private static final byte SNAPSHOT_END = 7;
+
+    private final Path directory;
+    private final Timer fsyncTimer;
+    private final Timer snapshotTimer;
+
+    // Порядок захвата: channelLock, затем lock
+    private final Lock channelLock = new ReentrantLock();
+    private final Lock lock = new ReentrantLock();
+    private final Condition hasPending = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+
+    // Под lock: буфер еще не записанных операций и логические позиции (байты с момента открытия)
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedPosition;
+    private long durablePosition;
+    private IOException failure;
+    private boolean closed;
+
+    // Под channelLock: текущий сегмент
+    private FileChannel channel;
+    private long generation;
+
+    private Thread flusher;
+
+    @Autowired
+    public StorageJournal(@Value("${filmorate.in-memory.data-dir}") Path directory, MeterRegistry meterRegistry) {
+        this.directory = directory;
+        this.fsyncTimer = Timer.builder("filmorate.journal.fsync")
+                .description("Запись пачки операций журнала с fsync")
+                .register(meterRegistry);
+        this.snapshotTimer = Timer.builder("filmorate.journal.snapshot")
+                .description("Время записи снимка хранилищ в памяти")
+                .register(meterRegistry);
+    }
+
+    // Восстановление: снимок и журнал после него передаются в handler, затем открывается новый сегмент.
+    // Оборванная последняя запись (сбой во время записи) отбрасывается.
+    public synchronized void recover(Consumer<JournalRecord> handler) {
+        if (channel != null) {
+            throw new IllegalStateException("Журнал уже открыт");
+        }
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            NavigableMap<Long, Path> snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            NavigableMap<Long, Path> segments = listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+
+            long from = 0;
+            long records = 0;
+            if (!snapshots.isEmpty()) {
+                from = snapshots.lastKey();
+                records += readSnapshot(snapshots.lastEntry().getValue(), handler);
+            }
+            for (Map.Entry<Long, Path> segment : segments.tailMap(from, true).entrySet()) {
+                records += readSegment(segment.getValue(), handler, segment.getKey().equals(segments.lastKey()));
+            }
+            deleteBefore(from);
+
+            generation = Math.max(from, segments.isEmpty() ? 0 : segments.lastKey()) + 1;
+            channel = FileChannel.open(segmentPath(generation), CREATE_NEW, WRITE);
+            syncDirectory();
+            log.info("Хранилища в памяти восстановлены за {} мс: {} операций из {}",
+                    (System.nanoTime() - start) / 1_000_000, records, directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить хранилища из " + directory, e);
+        }
+
+        flusher = new Thread(this::flushLoop, "storage-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Постановка операции в журнал. Порядок операций над одним ключом в журнале должен совпадать
+    // с порядком их применения в памяти, поэтому вызывается под блокировкой этого ключа.
+    public long append(JournalRecord record) {
+        byte[] frame = encode(record);
+        lock.lock();
+        try {
+            if (channel == null || closed) {
+                throw new IllegalStateException("Журнал не открыт");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Журнал недоступен после ошибки записи", failure);
+            }
+            pending.write(frame, 0, frame.length);
+            appendedPosition += frame.length;
+            hasPending.signal();
+            return appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ожидание записи на диск всех операций до позиции position
+    public void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durablePosition < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Операция не записана в журнал", failure);
+                }
+                if (closed && pending.size() == 0) {
+                    throw new IllegalStateException("Журнал закрыт");
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Снимок состояния: writer передает операции, воспроизводящие текущее состояние хранилищ.
+    // Запись в хранилища при этом не останавливается: снимок снимается после перехода на новый
+    // сегмент, и все, что в него не попало, есть в этом сегменте.
+    public synchronized void snapshot(Consumer<Consumer<JournalRecord>> writer) {
+        snapshotTimer.record(() -> {
+            try {
+                long snapshotGeneration = rotate();
+                Path temp = directory.resolve(SNAPSHOT_PREFIX + snapshotGeneration + SNAPSHOT_SUFFIX + TEMP_SUFFIX);
+                long[] records = {0};
+                try (FrameWriter out = new FrameWriter(FileChannel.open(temp, CREATE, TRUNCATE_EXISTING, WRITE))) {
+                    writer.accept(record -> {
+                        out.write(encode(record));
+                        records[0]++;
+                    });
+                    out.write(frame(new byte[]{SNAPSHOT_END}));
+                    out.force();
+                }
+                Files.move(temp, snapshotPath(snapshotGeneration), ATOMIC_MOVE);
+                syncDirectory();
+                deleteBefore(snapshotGeneration);
+                log.info("Снимок хранилищ в памяти записан: {} операций", records[0]);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось записать снимок хранилищ", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.lock();
+        try {
+            if (channel == null || closed) {
+                return;
+            }
+            closed = true;
+            hasPending.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join();
+            channelLock.lock();
+            try {
+                channel.close();
+            } finally {
+                channelLock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть журнал", e);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.size() == 0 && !closed) {
+                    hasPending.awaitUninterruptibly();
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            flush();
+        }
+    }
+
+    // Запись накопленных операций в текущий сегмент одним вызовом и fsync
+    private void flush() {
+        channelLock.lock();
+        try {
+            byte[] batch;
+            long position;
+            lock.lock();
+            try {
+                batch = pending.toByteArray();
+                pending.reset();
+                position = appendedPosition;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            if (batch.length > 0) {
+                long start = System.nanoTime();
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(batch);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                    log.error("Ошибка записи журнала", e);
+                }
+                fsyncTimer.record(System.nanoTime() - start, java.util.concurrent.TimeUnit.NANOSECONDS);
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durablePosition = position;
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    // Переход на новый сегмент после записи всех поставленных операций, возвращает его номер
+    private long rotate() throws IOException {
+        channelLock.lock();
+        try {
+            flush();
+            lock.lock();
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+            } finally {
+                lock.unlock();
+            }
+            channel.close();
+            generation++;
+            channel = FileChannel.open(segmentPath(generation), CREATE_NEW, WRITE);
+            syncDirectory();
+            return generation;
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    private long readSnapshot(Path file, Consumer<JournalRecord> handler) throws IOException {
+        long records = 0;
+        try (FrameReader reader = new FrameReader(file)) {
+            ByteBuffer payload;
+            while ((payload = reader.next()) != null) {
+                if (payload.get(payload.position()) == SNAPSHOT_END) {
+                    if (reader.next() == null && reader.atEnd()) {
+                        return records;
+                    }
+                    break;
+                }
+                handler.accept(decode(payload));
+                records++;
+            }
+        }
+        throw new IllegalStateException("Снимок поврежден: " + file);
+    }
+
+    private long readSegment(Path file, Consumer<JournalRecord> handler, boolean last) throws IOException {
+        long records = 0;
+        long validBytes;
+        try (FrameReader reader = new FrameReader(file)) {
+            ByteBuffer payload;
+            while ((payload = reader.next()) != null) {
+                handler.accept(decode(payload));
+                records++;
+            }
+            if (reader.atEnd()) {
+                return records;
+            }
+            validBytes = reader.offset();
+        }
+
+        // Оборванная запись в конце последнего сегмента - след сбоя во время записи
+        if (!last) {
+            throw new IllegalStateException("Сегмент журнала поврежден: " + file);
+        }
+        log.warn("Отброшен оборванный конец журнала {} после {} байт", file, validBytes);
+        try (FileChannel truncated = FileChannel.open(file, WRITE)) {
+            truncated.truncate(validBytes);
+            truncated.force(true);
+        }
+        return records;
+    }
+
+    private NavigableMap<Long, Path> listFiles(String prefix, String suffix) throws IOException {
+        NavigableMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())),
+                                path);
+                    } catch (NumberFormatException e) {
+                        log.warn("Посторонний файл в каталоге журнала: {}", path);
+                    }
+                }
+            });
+        }
+        return files;
+    }
+
+    // Удаление сегментов и снимков, которые покрывает снимок generation, и незавершенных снимков
+    private void deleteBefore(long generation) throws IOException {
+        List<Path> obsolete = new ArrayList<>();
+        obsolete.addAll(listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX).headMap(generation, false).values());
+        obsolete.addAll(listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(generation, false).values());
+        obsolete.addAll(listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX + TEMP_SUFFIX).values());
+        for (Path path : obsolete) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Фиксация создания и переименования файлов; не на всех платформах каталог можно открыть
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            log.debug("fsync каталога {} не поддерживается", directory, e);
+        }
+    }
+
+    private Path segmentPath(long generation) {
+        return directory.resolve(SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+    }
+
+    private Path snapshotPath(long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    static byte[] encode(JournalRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            switch (record) {
+                case JournalRecord.FilmPut(Film film) -> {
+                    out.writeByte(FILM_PUT);
+                    out.writeInt(film.getId());
+                    writeString(out, film.getName());
+                    writeString(out, film.getDescription());
+                    writeDate(out, film.getReleaseDate());
+                    out.writeInt(film.getDuration());
+                    out.writeInt(film.getMpa() == null ? 0 : film.getMpa().getId());
+                    if (film.getGenres() == null) {
+                        out.writeInt(-1);
+                    } else {
+                        out.writeInt(film.getGenres().size());
+                        for (Genre genre : film.getGenres()) {
+                            out.writeInt(genre.getId());
+                        }
+                    }
+                }
+                case JournalRecord.UserPut(User user) -> {
+                    out.writeByte(USER_PUT);
+                    out.writeInt(user.getId());
+                    writeString(out, user.getEmail());
+                    writeString(out, user.getLogin());
+                    writeString(out, user.getName());
+                    writeDate(out, user.getBirthday());
+                }
+                case JournalRecord.LikeAdded(int filmId, int userId, int likedAt) -> {
+                    out.writeByte(LIKE_ADDED);
+                    out.writeInt(filmId);
+                    out.writeInt(userId);
+                    out.writeInt(likedAt);
+                }
+                case JournalRecord.LikeRemoved(int filmId, int userId) -> {
+                    out.writeByte(LIKE_REMOVED);
+                    out.writeInt(filmId);
+                    out.writeInt(userId);
+                }
+                case JournalRecord.FriendAdded(int userId, int friendId) -> {
+                    out.writeByte(FRIEND_ADDED);
+                    out.writeInt(userId);
+                    out.writeInt(friendId);
+                }
+                case JournalRecord.FriendRemoved(int userId, int friendId) -> {
+                    out.writeByte(FRIEND_REMOVED);
+                    out.writeInt(userId);
+                    out.writeInt(friendId);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return frame(bytes.toByteArray());
+    }
+
+    static JournalRecord decode(ByteBuffer in) {
+        byte type = in.get();
+        return switch (type) {
+            case FILM_PUT -> {
+                int id = in.getInt();
+                String name = readString(in);
+                String description = readString(in);
+                LocalDate releaseDate = readDate(in);
+                int duration = in.getInt();
+                int mpaId = in.getInt();
+                int genresCount = in.getInt();
+                List<Genre> genres = null;
+                if (genresCount >= 0) {
+                    genres = new ArrayList<>(genresCount);
+                    for (int i = 0; i < genresCount; i++) {
+                        genres.add(new Genre(in.getInt(), null));
+                    }
+                }
+                yield new JournalRecord.FilmPut(new Film(id, name, description, releaseDate, duration, genres,
+                        mpaId == 0 ? null : new MpaRating(mpaId, null)));
+            }
+            case USER_PUT -> new JournalRecord.UserPut(new User(in.getInt(), readString(in), readString(in),
+                    readString(in), readDate(in)));
+            case LIKE_ADDED -> new JournalRecord.LikeAdded(in.getInt(), in.getInt(), in.getInt());
+            case LIKE_REMOVED -> new JournalRecord.LikeRemoved(in.getInt(), in.getInt());
+            case FRIEND_ADDED -> new JournalRecord.FriendAdded(in.getInt(), in.getInt());
+            case FRIEND_REMOVED -> new JournalRecord.FriendRemoved(in.getInt(), in.getInt());
+            default -> throw new IllegalStateException("Неизвестный тип операции журнала: " + type);
+        };
+    }
+
+    // Заголовок записи: длина и контрольная сумма данных
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .array();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeLong(date == null ? Long.MIN_VALUE : date.toEpochDay());
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    // Последовательное чтение записей файла через буфер; next возвращает null в конце файла
+    // или на первой поврежденной записи, atEnd отличает одно от другого
+    private static class FrameReader implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final long size;
+        private ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES).flip();
+        private long offset;
+        private final CRC32 crc = new CRC32();
+
+        FrameReader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, READ);
+            this.size = channel.size();
+        }
+
+        ByteBuffer next() throws IOException {
+            if (!fill(HEADER_BYTES)) {
+                return null;
+            }
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length <= 0 || length > MAX_RECORD_BYTES || !fill(HEADER_BYTES + length)) {
+                return null;
+            }
+
+            ByteBuffer payload = buffer.slice(buffer.position() + HEADER_BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+            buffer.position(buffer.position() + HEADER_BYTES + length);
+            offset += HEADER_BYTES + length;
+            return payload;
+        }
+
+        // Смещение за последней прочитанной целой записью
+        long offset() {
+            return offset;
+        }
+
+        boolean atEnd() {
+            return offset == size;
+        }
+
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (buffer.capacity() < bytes) {
+                buffer = ByteBuffer.allocate(bytes).put(buffer).flip();
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Буферизованная запись снимка
+    private static class FrameWriter implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES);
+
+        FrameWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(byte[] frame) {
+            try {
+                if (buffer.remaining() < frame.length) {
+                    drain();
+                }
+                if (frame.length > buffer.capacity()) {
+                    ByteBuffer large = ByteBuffer.wrap(frame);
+                    while (large.hasRemaining()) {
+                        channel.write(large);
+                    }
+                    return;
+                }
+                buffer.put(frame);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void force() throws IOException {
+            drain();
+            channel.force(true);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Запросы для потокового чтения: курсор только вперед, строки подгружаются порциями
+final class StreamingStatements {
+
+    static final int FETCH_SIZE = 500;
+
+    private StreamingStatements() {
+    }
+
+    static PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(FETCH_SIZE);
+        return ps;
+    }
+}
@@ -1,27 +1,44 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import io.micrometer.core.annotation.Timed;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component
+@Profile("!in-memory")
+@Timed(value = "filmorate.storage", histogram = true)
 public class UserDbStorage implements UserStorage {
 
+    private static final int USERS_BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final FriendGraphIndex friendGraph;
+    private final EntityCache<User> userCache;
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, FriendGraphIndex friendGraph,
+            EntityCache<User> userCache) {
         this.jdbcTemplate = jdbcTemplate;
+        this.friendGraph = friendGraph;
+        this.userCache = userCache;
     }
 
     // Создание пользователя
@@ -43,70 +60,203 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
+    // Пакетное создание пользователей (вызывающая сторона отвечает за размер пакета)
+    @Override
+    @Transactional
+    public List<User> createUsers(List<User> users) {
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sql, new String[]{"user_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = users.get(i);
+                        ps.setString(1, user.getEmail());
+                        ps.setString(2, user.getLogin());
+                        ps.setString(3, user.getName());
+                        ps.setObject(4, user.getBirthday());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return users.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(((Number) keys.get(i).values().iterator().next()).intValue());
+        }
+
+        return users;
+    }
+
     // Обновление пользователя
     public User updateUser(User user) {
         String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE user_id = ?";
 
-        jdbcTemplate.update(sql,
+        int rowsAffected = jdbcTemplate.update(sql,
                 user.getEmail(),
                 user.getLogin(),
                 user.getName(),
                 user.getBirthday(),
                 user.getId());
 
+        if (rowsAffected == 0) {
+            throw new NotFoundException("Пользователь с ID " + user.getId() + " не найден");
+        }
+        userCache.invalidate(user.getId());
+
         return user;
     }
 
-    // Получение пользователя по ID
+    // Получение пользователя по ID (кэш заполняется с основной базы, как в FilmDbStorage)
     @Override
     public User getUserById(int id) {
-        String sql = "SELECT * FROM users WHERE user_id = ?";
-
-        try {
-            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> mapRowToUser(rs), id);
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Пользователь с ID " + id + " не найден");
-        }
+        return userCache.get(id, this::loadUser);
     }
 
     // Получение всех пользователей
     @Override
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         String sql = "SELECT * FROM users";
 
         return jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToUser(rs));
     }
 
-    // Добавления друга
+    // Получение страницы пользователей с ID больше afterId
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getUsersPage(int afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToUser(rs), afterId, limit);
+    }
+
+    // Потоковое чтение всех пользователей
     @Override
+    @Transactional(readOnly = true)
+    public void forEachUser(Consumer<User> action) {
+        String sql = "SELECT * FROM users ORDER BY user_id";
+
+        jdbcTemplate.query(connection -> StreamingStatements.prepare(connection, sql),
+                rs -> {
+                    action.accept(mapRowToUser(rs));
+                });
+    }
+
+    // Добавления друга. Повторное добавление ничего не меняет, как и повторный лайк.
+    // Новая строка не подтверждена: обратная связь не меняется, а прямая могла уже
+    // существовать за счет подтвержденной обратной строки (важно при откате)
+    @Override
+    @Transactional
     public void addFriend(int userId, int friendId) {
+        Boolean reverseConfirmed = lockFriendships(userId, friendId).get(friendId);
         String sql = "INSERT INTO friendships (user_id, friend_id, is_confirmed) VALUES (?, ?, ?)";
-        jdbcTemplate.update(sql, userId, friendId, false);
+        try {
+            jdbcTemplate.update(sql, userId, friendId, false);
+        } catch (DuplicateKeyException e) {
+            return;
+        }
+
+        friendGraph.addFriend(userId, friendId);
+        if (!Boolean.TRUE.equals(reverseConfirmed)) {
+            onRollback(() -> friendGraph.removeFriend(userId, friendId));
+        }
     }
 
-    // Удаление друга
+    // Удаление друга. После удаления строки (userId, friendId) userId видит друга только через
+    // подтвержденную обратную строку, а friendId видит userId только при наличии обратной строки
     @Override
-    public void removeFriend(int userId, int friendId) {
-        String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+    @Transactional
+    public boolean removeFriend(int userId, int friendId) {
+        Map<Integer, Boolean> rows = lockFriendships(userId, friendId);
+        Boolean confirmed = rows.get(userId);
+        if (confirmed == null) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM friendships WHERE user_id = ? AND friend_id = ?", userId, friendId);
+
+        Boolean reverse = rows.get(friendId);
+        friendGraph.setFriendship(userId, friendId, Boolean.TRUE.equals(reverse), reverse != null);
+        onRollback(() -> friendGraph.setFriendship(userId, friendId, true, reverse != null || confirmed));
+        return true;
+    }
+
+    // Строки пары в обе стороны (user_id -> is_confirmed), заблокированные до конца транзакции
+    private Map<Integer, Boolean> lockFriendships(int userId, int friendId) {
+        Map<Integer, Boolean> rows = new HashMap<>();
+        // IN по обоим столбцам вместо OR двух пар: так H2 ищет по первичному ключу
+        jdbcTemplate.query("SELECT user_id, is_confirmed FROM friendships "
+                        + "WHERE user_id IN (?, ?) AND friend_id IN (?, ?) AND user_id <> friend_id FOR UPDATE",
+                rs -> {
+                    rows.put(rs.getInt("user_id"), rs.getBoolean("is_confirmed"));
+                }, userId, friendId, friendId, userId);
+        return rows;
     }
 
-    // Получение списка друзей пользователя
+    // Получение списка друзей пользователя (по возрастанию ID)
     @Override
+    @Transactional(readOnly = true)
     public List<User> getFriends(int userId) {
-        String sql = """
-                    SELECT u.user_id, u.email, u.login, u.name, u.birthday
-                    FROM users u
-                    JOIN friendships f ON u.user_id = f.friend_id
-                    WHERE f.user_id = ?
-                    UNION
-                    SELECT u.user_id, u.email, u.login, u.name, u.birthday
-                    FROM users u
-                    JOIN friendships f ON u.user_id = f.user_id
-                    WHERE f.friend_id = ? AND f.is_confirmed = true
-                """;
-
-        return jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToUser(rs), userId, userId);
+        return getUsersByIds(friendGraph.getFriendIds(userId));
+    }
+
+    // Получение общих друзей двух пользователей
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getCommonFriends(int userId, int otherId) {
+        return getUsersByIds(friendGraph.getCommonFriendIds(userId, otherId));
+    }
+
+    // Количество друзей пользователя
+    @Override
+    public int getFriendsCount(int userId) {
+        return friendGraph.getFriendsCount(userId);
+    }
+
+    // Загрузка пользователя из базы в обход кэша
+    private User loadUser(int id) {
+        String sql = "SELECT * FROM users WHERE user_id = ?";
+
+        try {
+            return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> mapRowToUser(rs), id);
+        } catch (EmptyResultDataAccessException e) {
+            throw new NotFoundException("Пользователь с ID " + id + " не найден");
+        }
+    }
+
+    // Загрузка пользователей по отсортированным ID (один запрос на каждые USERS_BATCH_SIZE ID)
+    private List<User> getUsersByIds(int[] ids) {
+        List<User> users = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += USERS_BATCH_SIZE) {
+            Object[] batch = Arrays.stream(ids, from, Math.min(from + USERS_BATCH_SIZE, ids.length))
+                    .boxed()
+                    .toArray();
+            String sql = "SELECT * FROM users WHERE user_id IN (%s) ORDER BY user_id"
+                    .formatted(String.join(", ", Collections.nCopies(batch.length, "?")));
+
+            users.addAll(jdbcTemplate.query(sql, (rs, rowNum) -> mapRowToUser(rs), batch));
+        }
+        return users;
+    }
+
+    // Граф дружбы меняется сразу, чтобы транзакция видела свои изменения;
+    // при откате транзакции изменение отменяется
+    private void onRollback(Runnable undo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    undo.run();
+                }
+            }
+        });
     }
 
     // Маппинг данных в объект User
@@ -2,20 +2,32 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserStorage {
 
     User createUser(User user);
 
+    List<User> createUsers(List<User> users);
+
     User updateUser(User user);
 
     User getUserById(int id);
 
     List<User> getAllUsers();
 
+    List<User> getUsersPage(int afterId, int limit);
+
+    void forEachUser(Consumer<User> action);
+
     void addFriend(int userId, int friendId);
 
-    void removeFriend(int userId, int friendId);
+    // Возвращает false, если такой дружбы не было
+    boolean removeFriend(int userId, int friendId);
 
     List<User> getFriends(int userId);
+
+    List<User> getCommonFriends(int userId, int otherId);
+
+    int getFriendsCount(int userId);
 }
@@ -31,9 +31,16 @@ CREATE TABLE IF NOT EXISTS films
     release_date DATE         NOT NULL,
     duration     INT          NOT NULL CHECK (duration > 0),
     mpa_id       TINYINT,
+    likes_count  INT          NOT NULL DEFAULT 0,
     FOREIGN KEY (mpa_id) REFERENCES mpa_ratings (mpa_id)
 );
 
+-- Счетчик лайков для баз, созданных до его появления
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INT NOT NULL DEFAULT 0;
+
+-- Рейтинг популярности фильмов
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, film_id);
+
 -- Жанры фильмов
 CREATE TABLE IF NOT EXISTS film_genres
 (
@@ -58,9 +65,33 @@ CREATE TABLE IF NOT EXISTS friendships
 -- Лайки фильмов
 CREATE TABLE IF NOT EXISTS film_likes
 (
-    film_id INT,
-    user_id INT,
+    film_id    INT,
+    user_id    INT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
     PRIMARY KEY (film_id, user_id),
     FOREIGN KEY (film_id) REFERENCES films (film_id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users (user_id) ON DELETE CASCADE
 );
+
+-- Время лайка для баз, созданных до его появления: старые лайки относятся к началу эпохи,
+-- чтобы не попасть в популярное за последние сутки и неделю
+ALTER TABLE film_likes ADD COLUMN IF NOT EXISTS created_at TIMESTAMP WITH TIME ZONE NOT NULL
+    DEFAULT TIMESTAMP WITH TIME ZONE '1970-01-01 00:00:00+00';
+ALTER TABLE film_likes ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+
+-- Лайки за последние сутки и неделю (TrendingFilmsService)
+CREATE INDEX IF NOT EXISTS film_likes_created_idx ON film_likes (created_at);
+
+-- Вторичные индексы для обратных направлений связей. H2 сам индексирует столбцы внешних ключей,
+-- но составные индексы покрывают запросы без обращения к таблице и нужны в других СУБД.
+-- Покрытие запросов хранилищ индексами проверяет QueryPlanTests.
+CREATE INDEX IF NOT EXISTS film_likes_user_idx ON film_likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS friendships_friend_idx ON friendships (friend_id, user_id);
+CREATE INDEX IF NOT EXISTS film_genres_genre_idx ON film_genres (genre_id, film_id);
+
+-- Отметки времени для измерения отставания реплики (ReplicaLagMonitor)
+CREATE TABLE IF NOT EXISTS replica_heartbeat
+(
+    id      TINYINT PRIMARY KEY,
+    beat_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
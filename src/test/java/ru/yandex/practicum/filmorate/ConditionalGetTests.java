@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:conditional-get-tests")
+@AutoConfigureMockMvc
+class ConditionalGetTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ContentVersions contentVersions;
+
+    @Test
+    void testPopularFilmsEtagChangesOnLike() throws Exception {
+        Film film = filmService.addFilm(newFilm("Фильм"));
+        User user = userService.createUser(
+                new User(0, "etag@example.com", "etag", "User", LocalDate.of(2000, 1, 1)));
+
+        String etag = etagOf("/films/popular");
+        mockMvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        filmService.addLike(film.getId(), user.getId());
+
+        mockMvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        assertThat(etagOf("/films/popular")).isNotEqualTo(etag);
+    }
+
+    @Test
+    void testFilmEtagChangesOnlyOnItsUpdate() throws Exception {
+        Film film = filmService.addFilm(newFilm("Фильм 1"));
+        Film other = filmService.addFilm(newFilm("Фильм 2"));
+        String etag = etagOf("/films/" + film.getId());
+
+        other.setName("Фильм 2 измененный");
+        filmService.updateFilm(other);
+        mockMvc.perform(get("/films/" + film.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        film.setName("Фильм 1 измененный");
+        filmService.updateFilm(film);
+        mockMvc.perform(get("/films/" + film.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testMissingFilmIsNotCachedAfterCreation() throws Exception {
+        int nextId = filmService.addFilm(newFilm("Предыдущий фильм")).getId() + 1;
+        // Версия фильма до его создания: ее не должен получить клиент и не должно подтвердить создание
+        String etag = contentVersions.filmEtag(nextId);
+
+        mockMvc.perform(get("/films/" + nextId))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+
+        assertThat(filmService.addFilm(newFilm("Новый фильм")).getId()).isEqualTo(nextId);
+        mockMvc.perform(get("/films/" + nextId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void testReferenceDataEtags() throws Exception {
+        for (String path : List.of("/genres", "/mpa")) {
+            String etag = etagOf(path);
+            mockMvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified());
+        }
+    }
+
+    private String etagOf(String path) throws Exception {
+        String etag = mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank();
+        return etag;
+    }
+
+    private static Film newFilm(String name) {
+        return new Film(0, name, "Описание фильма", LocalDate.of(2000, 1, 1), 100,
+                List.of(new Genre(1, null)), new MpaRating(1, null));
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Единственное соединение пула занято тестом: запросы не дожидаются соединения и получают 503
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:connection-pool-exhaustion-tests",
+        "spring.datasource.hikari.maximum-pool-size=1",
+        "spring.datasource.hikari.connection-timeout=250"
+})
+@AutoConfigureMockMvc
+class ConnectionPoolExhaustionTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void testExhaustedPoolAnswersServiceUnavailable() throws Exception {
+        try (Connection ignored = dataSource.getConnection()) {
+            // Транзакционная запись и чтение только для чтения: ожидание при открытии транзакции
+            mockMvc.perform(put("/films/1/like/1")).andExpect(status().isServiceUnavailable());
+            mockMvc.perform(get("/films")).andExpect(status().isServiceUnavailable());
+            // Чтение без транзакции: ожидание в JdbcTemplate
+            mockMvc.perform(get("/users/1/friends")).andExpect(status().isServiceUnavailable());
+        }
+    }
+}
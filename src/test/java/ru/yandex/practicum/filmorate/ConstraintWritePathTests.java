@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:constraint-write-path-tests")
+@AutoConfigureMockMvc
+class ConstraintWritePathTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testLikeWithMissingFilmOrUserIsNotFound() throws Exception {
+        Film film = filmService.addFilm(new Film(0, "Фильм", "Описание фильма", LocalDate.of(2000, 1, 1),
+                100, List.of(new Genre(1, null)), new MpaRating(1, null)));
+        User user = newUser("like");
+
+        mockMvc.perform(put("/films/999999/like/" + user.getId()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Фильм с ID 999999 не найден"));
+        mockMvc.perform(put("/films/" + film.getId() + "/like/999999"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Пользователь с ID 999999 не найден"));
+        mockMvc.perform(delete("/films/" + film.getId() + "/like/999999"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(put("/films/" + film.getId() + "/like/" + user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/films/" + film.getId() + "/like/" + user.getId()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testFriendWritesMapConstraintViolations() throws Exception {
+        User user = newUser("friend1");
+        User friend = newUser("friend2");
+
+        mockMvc.perform(put("/users/" + user.getId() + "/friends/999999"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/users/999999/friends/" + friend.getId()))
+                .andExpect(status().isNotFound());
+
+        // Повторное добавление друга, как и повторный лайк, ничего не меняет
+        mockMvc.perform(put("/users/" + user.getId() + "/friends/" + friend.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/users/" + user.getId() + "/friends/" + friend.getId()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testUpdateOfMissingUserIsNotFound() throws Exception {
+        mockMvc.perform(put("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"id": 999999, "email": "missing@example.com", "login": "missing",
+                                 "name": "Missing", "birthday": "2000-01-01"}
+                                """))
+                .andExpect(status().isNotFound());
+    }
+
+    private User newUser(String login) {
+        return userService.createUser(new User(0, login + "@example.com", login, "User",
+                LocalDate.of(2000, 1, 1)));
+    }
+}
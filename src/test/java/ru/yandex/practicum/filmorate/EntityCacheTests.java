@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EntityCacheTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final EntityCache<String> cache = new EntityCache<>("test", 2, Duration.ofSeconds(10),
+            UnaryOperator.identity(), meterRegistry, now::get);
+
+    @Test
+    void testEntriesExpireAfterTtl() {
+        assertThat(cache.get(1, this::load)).isEqualTo("1#1");
+        now.addAndGet(Duration.ofSeconds(9).toNanos());
+        assertThat(cache.get(1, this::load)).isEqualTo("1#1");
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(cache.get(1, this::load)).isEqualTo("1#2");
+
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvicted() {
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        cache.get(1, this::load);
+        cache.get(3, this::load);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(1, this::load)).isEqualTo("1#1");
+        assertThat(cache.get(2, this::load)).isEqualTo("2#4");
+        assertThat(meterRegistry.get("cache.evictions").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testInvalidationDuringLoadSkipsCaching() {
+        cache.get(1, id -> {
+            cache.invalidate(id);
+            return load(id);
+        });
+        assertThat(cache.get(1, this::load)).isEqualTo("1#2");
+
+        cache.invalidate(1);
+        assertThat(cache.get(1, this::load)).isEqualTo("1#3");
+    }
+
+    @Test
+    void testLoaderExceptionIsNotCached() {
+        assertThatThrownBy(() -> cache.get(1, id -> {
+            throw new NotFoundException("Не найден");
+        })).isInstanceOf(NotFoundException.class);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.get(1, this::load)).isEqualTo("1#1");
+    }
+
+    private String load(int id) {
+        return id + "#" + loads.incrementAndGet();
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).counter().count();
+    }
+}
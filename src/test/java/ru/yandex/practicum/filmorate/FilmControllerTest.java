@@ -8,14 +8,24 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.controller.PageCursor;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -31,6 +41,15 @@ public class FilmControllerTest {
     @MockBean
     private FilmService filmService;
 
+    @MockBean
+    private RecommendationService recommendationService;
+
+    @MockBean
+    private TrendingFilmsService trendingFilmsService;
+
+    @MockBean
+    private ContentVersions contentVersions;
+
     private Film film;
 
     @BeforeEach
@@ -104,6 +123,84 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$.duration").value(savedFilm.getDuration()));
     }
 
+    @Test
+    public void testGetFilmsPage() throws Exception {
+        Film savedFilm = new Film();
+        savedFilm.setId(7);
+        savedFilm.setName(film.getName());
+
+        when(filmService.getFilmsPage(0, 1)).thenReturn(List.of(savedFilm));
+        when(filmService.getFilmsPage(7, 1)).thenReturn(List.of());
+
+        mockMvc.perform(get("/films").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().string(PageCursor.NEXT_CURSOR_HEADER, PageCursor.encode(7)));
+
+        mockMvc.perform(get("/films").param("limit", "1").param("after", PageCursor.encode(7)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0))
+                .andExpect(header().doesNotExist(PageCursor.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void testGetFilmsPageWithInvalidCursor() throws Exception {
+        mockMvc.perform(get("/films").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testGetTrendingFilmsValidatesWindow() throws Exception {
+        when(trendingFilmsService.getTrendingFilms(TrendingFilmsService.Window.WEEK, 5))
+                .thenReturn(List.of(film));
+
+        mockMvc.perform(get("/films/trending").param("window", "7d").param("count", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Название фильма"));
+        mockMvc.perform(get("/films/trending").param("window", "30d"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testExportFilmsAsNdjson() throws Exception {
+        Film first = new Film();
+        first.setId(1);
+        Film second = new Film();
+        second.setId(2);
+
+        doAnswer(invocation -> {
+            Consumer<Film> action = invocation.getArgument(0);
+            action.accept(first);
+            action.accept(second);
+            return null;
+        }).when(filmService).forEachFilm(any());
+
+        MvcResult result = mockMvc.perform(get("/films").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        objectMapper.writeValueAsString(first) + "\n"
+                                + objectMapper.writeValueAsString(second) + "\n"));
+    }
+
+    @Test
+    public void testGetAllFilmsDefaultsToJson() throws Exception {
+        when(filmService.getAllFilms()).thenReturn(List.of(film));
+
+        mockMvc.perform(get("/films").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(1));
+
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
     @Test
     public void testServiceThrowsValidationException() throws Exception {
         film.setName("");
@@ -1,18 +1,29 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.config.CacheConfig;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
 import ru.yandex.practicum.filmorate.storage.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -23,11 +34,18 @@ class FilmDbStorageTests {
 
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
+    private final QueryCountingJdbcTemplate countingJdbcTemplate;
 
     @Autowired
     public FilmDbStorageTests(JdbcTemplate jdbcTemplate) {
-        this.filmStorage = new FilmDbStorage(jdbcTemplate);
-        this.userStorage = new UserDbStorage(jdbcTemplate);
+        this.countingJdbcTemplate = new QueryCountingJdbcTemplate(jdbcTemplate.getDataSource());
+        ReferenceDataCache referenceData = new ReferenceDataCache(jdbcTemplate);
+        this.filmStorage = new FilmDbStorage(countingJdbcTemplate, referenceData,
+                new ContentVersions(referenceData), new EntityCache<>("films", 100, Duration.ofMinutes(5),
+                        CacheConfig::copyFilm, new SimpleMeterRegistry()));
+        this.userStorage = new UserDbStorage(jdbcTemplate, new FriendGraphIndex(jdbcTemplate),
+                new EntityCache<>("users", 100, Duration.ofMinutes(5), CacheConfig::copyUser,
+                        new SimpleMeterRegistry()));
     }
 
     @Test
@@ -79,6 +97,21 @@ class FilmDbStorageTests {
                 .contains("Комедия");
     }
 
+    @Test
+    void testGetFilmsByIdsKeepsRequestedOrder() {
+        Film film1 = filmStorage.addFilm(new Film(0, "Фильм 1", "Описание фильма 1",
+                LocalDate.of(2000, 1, 1), 100,
+                List.of(new Genre(2, "Драма")), new MpaRating(2, "PG")));
+        Film film2 = filmStorage.addFilm(new Film(0, "Фильм 2", "Описание фильма 2",
+                LocalDate.of(2001, 1, 1), 101,
+                List.of(), new MpaRating(3, "PG-13")));
+
+        List<Film> films = filmStorage.getFilmsByIds(new int[]{film2.getId(), 999, film1.getId()});
+
+        assertThat(films).extracting(Film::getName).containsExactly("Фильм 2", "Фильм 1");
+        assertThat(films.get(1).getGenres()).extracting(Genre::getName).containsExactly("Драма");
+    }
+
     @Test
     void testGetAllFilms() {
         Film film1 = new Film(0, "Фильм 1", "Описание фильма 1",
@@ -96,6 +129,89 @@ class FilmDbStorageTests {
         assertThat(films).hasSize(2);
     }
 
+    @Test
+    void testGetAllFilmsQueryCount() {
+        for (int i = 0; i < 10; i++) {
+            filmStorage.addFilm(new Film(0, "Фильм " + i, "Описание фильма " + i,
+                    LocalDate.of(2000, 1, 1), 100,
+                    List.of(new Genre(1, "Комедия"), new Genre(2, "Драма")),
+                    new MpaRating(1, "G")));
+        }
+
+        countingJdbcTemplate.resetCount();
+        List<Film> films = filmStorage.getAllFilms();
+
+        assertThat(countingJdbcTemplate.getCount()).isEqualTo(2);
+        assertThat(films).hasSize(10)
+                .allSatisfy(film -> {
+                    assertThat(film.getMpa().getName()).isEqualTo("G");
+                    assertThat(film.getGenres()).extracting(Genre::getName)
+                            .containsExactly("Комедия", "Драма");
+                });
+
+        countingJdbcTemplate.resetCount();
+        filmStorage.getMostPopularFilms(5);
+
+        assertThat(countingJdbcTemplate.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetFilmByIdIsCachedUntilUpdate() {
+        Film film = filmStorage.addFilm(new Film(0, "Фильм", "Описание фильма",
+                LocalDate.of(2000, 1, 1), 100, List.of(new Genre(1, null)), new MpaRating(1, null)));
+        filmStorage.getFilmById(film.getId());
+
+        countingJdbcTemplate.resetCount();
+        Film cached = filmStorage.getFilmById(film.getId());
+        cached.setName("Изменено вызывающей стороной");
+
+        assertThat(countingJdbcTemplate.getCount()).isZero();
+        assertThat(filmStorage.getFilmById(film.getId()).getName()).isEqualTo("Фильм");
+
+        film.setName("Новое название");
+        filmStorage.updateFilm(film);
+
+        assertThat(filmStorage.getFilmById(film.getId()).getName()).isEqualTo("Новое название");
+    }
+
+    @Test
+    void testAddFilmsBatch() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            films.add(new Film(0, "Фильм " + i, "Описание фильма " + i,
+                    LocalDate.of(2000, 1, 1), 100,
+                    List.of(new Genre(1, null), new Genre(2, null), new Genre(1, null)),
+                    new MpaRating(1, null)));
+        }
+
+        countingJdbcTemplate.resetCount();
+        filmStorage.addFilms(films);
+
+        assertThat(countingJdbcTemplate.getCount()).isEqualTo(2);
+        assertThat(films).extracting(Film::getId).doesNotHaveDuplicates().doesNotContain(0);
+        assertThat(filmStorage.getFilmById(films.getLast().getId()).getGenres())
+                .extracting(Genre::getName)
+                .containsExactly("Комедия", "Драма");
+    }
+
+    @Test
+    void testForEachFilm() {
+        filmStorage.addFilm(new Film(0, "Фильм 1", "Описание фильма 1",
+                LocalDate.of(2000, 1, 1), 100,
+                List.of(new Genre(1, "Комедия"), new Genre(2, "Драма")), new MpaRating(1, "G")));
+        filmStorage.addFilm(new Film(0, "Фильм 2", "Описание фильма 2",
+                LocalDate.of(2001, 1, 1), 101, List.of(), new MpaRating(2, "PG")));
+
+        List<Film> films = new ArrayList<>();
+        filmStorage.forEachFilm(films::add);
+
+        assertThat(films).extracting(Film::getName).containsExactly("Фильм 1", "Фильм 2");
+        assertThat(films.get(0).getGenres()).extracting(Genre::getName)
+                .containsExactly("Комедия", "Драма");
+        assertThat(films.get(1).getGenres()).isEmpty();
+        assertThat(films.get(1).getMpa().getName()).isEqualTo("PG");
+    }
+
     @Test
     void testAddAndRemoveLike() {
         User user = new User(0, "test@example.com", "user", "User",
@@ -115,6 +231,108 @@ class FilmDbStorageTests {
         assertThat(popularFilms).hasSize(1).extracting(Film::getName).contains("Фильм");
     }
 
+    @Test
+    void testLikeWritesRelyOnConstraints() {
+        int userId = userStorage.createUser(new User(0, "test@example.com", "user", "User",
+                LocalDate.of(2000, 1, 1))).getId();
+        Film film = filmStorage.addFilm(new Film(0, "Фильм", "Описание фильма",
+                LocalDate.of(2000, 1, 1), 100, List.of(), new MpaRating(1, "G")));
+
+        countingJdbcTemplate.resetCount();
+        filmStorage.addLike(film.getId(), userId);
+        filmStorage.addLike(film.getId(), userId);
+
+        // Вставка и счетчик для первого лайка, одна неудачная вставка для повторного
+        assertThat(countingJdbcTemplate.getCount()).isEqualTo(3);
+        assertThat(filmStorage.reconcileLikesCounts()).isZero();
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId(), 999))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> filmStorage.addLike(999, userId))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(filmStorage.removeLike(film.getId(), userId)).isTrue();
+        assertThat(filmStorage.removeLike(film.getId(), userId)).isFalse();
+    }
+
+    @Test
+    void testForEachLikeSinceReadsOnlyRecentLikes() {
+        int userId1 = userStorage.createUser(new User(0, "test1@example.com", "user1", "User1",
+                LocalDate.of(2000, 1, 1))).getId();
+        int userId2 = userStorage.createUser(new User(0, "test2@example.com", "user2", "User2",
+                LocalDate.of(2000, 1, 1))).getId();
+        Film film = filmStorage.addFilm(new Film(0, "Фильм", "Описание фильма",
+                LocalDate.of(2000, 1, 1), 100, List.of(), new MpaRating(1, "G")));
+        long before = System.currentTimeMillis() - Duration.ofMinutes(1).toMillis();
+        filmStorage.addLike(film.getId(), userId1);
+        filmStorage.addLike(film.getId(), userId2);
+        countingJdbcTemplate.update("UPDATE film_likes SET created_at = DATEADD(DAY, -10, created_at) "
+                + "WHERE user_id = ?", userId2);
+
+        List<long[]> likes = new ArrayList<>();
+        filmStorage.forEachLikeSince(System.currentTimeMillis() - Duration.ofDays(7).toMillis(),
+                (filmId, userId, likedAt) -> likes.add(new long[]{filmId, userId, likedAt}));
+
+        assertThat(likes).hasSize(1);
+        assertThat(likes.get(0)[1]).isEqualTo(userId1);
+        assertThat(likes.get(0)[2]).isGreaterThan(before);
+    }
+
+    @Test
+    void testMostPopularFilmsUseLikesCount() {
+        int userId = userStorage.createUser(new User(0, "test@example.com", "user", "User",
+                LocalDate.of(2000, 1, 1))).getId();
+        filmStorage.addFilm(new Film(0, "Фильм 1", "Описание фильма 1",
+                LocalDate.of(2000, 1, 1), 100, List.of(), new MpaRating(1, "G")));
+        Film liked = filmStorage.addFilm(new Film(0, "Фильм 2", "Описание фильма 2",
+                LocalDate.of(2001, 1, 1), 100, List.of(), new MpaRating(1, "G")));
+
+        filmStorage.addLike(liked.getId(), userId);
+
+        assertThat(filmStorage.getMostPopularFilms(1)).extracting(Film::getName)
+                .containsExactly("Фильм 2");
+
+        countingJdbcTemplate.update("UPDATE films SET likes_count = 42 WHERE film_id = ?",
+                liked.getId());
+
+        assertThat(filmStorage.reconcileLikesCounts()).isEqualTo(1);
+
+        filmStorage.removeLike(liked.getId(), userId);
+
+        assertThat(filmStorage.reconcileLikesCounts()).isZero();
+    }
+
+    @Test
+    void testApplyLikeChanges() {
+        int userId1 = userStorage.createUser(new User(0, "test1@example.com", "user1", "User1",
+                LocalDate.of(2000, 1, 1))).getId();
+        int userId2 = userStorage.createUser(new User(0, "test2@example.com", "user2", "User2",
+                LocalDate.of(2000, 1, 1))).getId();
+        Film film = filmStorage.addFilm(new Film(0, "Фильм", "Описание фильма",
+                LocalDate.of(2000, 1, 1), 100, List.of(), new MpaRating(1, "G")));
+        filmStorage.addLike(film.getId(), userId1);
+
+        filmStorage.applyLikeChanges(List.of(
+                new LikeChange(film.getId(), userId2, true),
+                new LikeChange(film.getId(), userId1, false)));
+
+        Integer likesCount = countingJdbcTemplate.queryForObject(
+                "SELECT likes_count FROM films WHERE film_id = ?", Integer.class, film.getId());
+        assertThat(likesCount).isEqualTo(1);
+        assertThat(filmStorage.reconcileLikesCounts()).isZero();
+    }
+
+    @Test
+    void testAddFilmWithUnknownGenre() {
+        Film film = new Film(0, "Фильм", "Описание фильма",
+                LocalDate.of(2000, 1, 1), 100,
+                List.of(new Genre(999, null)), new MpaRating(1, null));
+
+        countingJdbcTemplate.resetCount();
+
+        assertThatThrownBy(() -> filmStorage.addFilm(film))
+                .isInstanceOf(ValidationException.class);
+        assertThat(countingJdbcTemplate.getCount()).isZero();
+    }
+
     @Test
     void testGetFilmByIdNotFound() {
         assertThatThrownBy(() -> filmStorage.getFilmById(999))
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmSearchService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+class FilmSearchServiceTests {
+
+    private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+    private final FilmSearchService filmSearchService = new FilmSearchService(filmStorage);
+    private final Map<Integer, Film> films = new LinkedHashMap<>();
+
+    FilmSearchServiceTests() {
+        when(filmStorage.getFilmsByIds(any())).thenAnswer(invocation ->
+                Arrays.stream((int[]) invocation.getArgument(0)).mapToObj(films::get).toList());
+        doAnswer(invocation -> {
+            Consumer<Film> action = invocation.getArgument(0);
+            films.values().forEach(action);
+            return null;
+        }).when(filmStorage).forEachFilm(any());
+    }
+
+    @Test
+    void testNameMatchesRankAboveDescriptionMatches() {
+        film(1, "Полет", "Фильм о звездах");
+        film(2, "Звездные войны", "Фантастика");
+        film(3, "Звезда", "Драма");
+        film(4, "Комедия", "Без совпадений");
+        film(5, "Космос", "Одна звезда");
+        filmSearchService.rebuild();
+
+        // Название, затем точное совпадение в описании, затем префикс в описании
+        assertThat(search("звезда", 0, 10)).containsExactly(3, 5, 1);
+        assertThat(search("ЗВЁЗД", 0, 10)).startsWith(2, 3).containsExactlyInAnyOrder(1, 2, 3, 5);
+    }
+
+    @Test
+    void testAllQueryWordsMustMatch() {
+        film(1, "Star Wars", "Space opera");
+        film(2, "Star Trek", "Space travel");
+        film(3, "Trek", "Mountain hiking");
+        filmSearchService.rebuild();
+
+        assertThat(search("star tre", 0, 10)).containsExactly(2);
+        assertThat(search("spa", 0, 10)).containsExactlyInAnyOrder(1, 2);
+        assertThat(search("star hiking", 0, 10)).isEmpty();
+        assertThat(search(" ,.! ", 0, 10)).isEmpty();
+    }
+
+    @Test
+    void testUpdatedFilmIsReindexed() {
+        film(1, "Старое название", "Описание");
+        filmSearchService.rebuild();
+
+        Film updated = film(1, "Новое название", "Описание");
+        filmSearchService.index(updated);
+        film(2, "Старый фильм", "Описание");
+        filmSearchService.index(films.get(2));
+
+        assertThat(search("стар", 0, 10)).containsExactly(2);
+        assertThat(search("новое", 0, 10)).containsExactly(1);
+    }
+
+    @Test
+    void testPagination() {
+        for (int id = 1; id <= 25; id++) {
+            film(id, "Фильм " + id, "Описание");
+        }
+        filmSearchService.rebuild();
+
+        List<Integer> all = search("фильм", 0, 100);
+        assertThat(all).hasSize(25);
+        assertThat(search("фильм", 10, 10)).containsExactlyElementsOf(all.subList(10, 20));
+        assertThat(search("фильм", 20, 10)).containsExactlyElementsOf(all.subList(20, 25));
+        assertThat(search("фильм", 30, 10)).isEmpty();
+    }
+
+    private List<Integer> search(String query, int offset, int limit) {
+        return filmSearchService.search(query, offset, limit).stream().map(Film::getId).toList();
+    }
+
+    private Film film(int id, String name, String description) {
+        Film film = new Film(id, name, description, null, 100, null, null);
+        films.put(id, film);
+        return film;
+    }
+}
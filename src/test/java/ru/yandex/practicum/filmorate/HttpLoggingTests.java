@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpLogWriter;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.Precorrelation;
+import ru.yandex.practicum.filmorate.logging.AsyncHttpLogWriter;
+import ru.yandex.practicum.filmorate.logging.SamplingRequestCondition;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class HttpLoggingTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testWriterDropsEntriesWhenBufferIsFullAndFlushesOnClose() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingWriter delegate = new BlockingWriter(writerBlocked, release);
+        AsyncHttpLogWriter writer = new AsyncHttpLogWriter(delegate, 2, meterRegistry);
+
+        // Первая запись занимает фоновый поток, следующие две заполняют буфер
+        writer.write(Mockito.mock(Precorrelation.class), "request-1");
+        assertThat(writerBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        writer.write(Mockito.mock(Correlation.class), "response-1");
+        writer.write(Mockito.mock(Precorrelation.class), "request-2");
+        writer.write(Mockito.mock(Correlation.class), "response-2");
+
+        assertThat(meterRegistry.get("filmorate.http.log.dropped").counter().count()).isEqualTo(1);
+        assertThat(writer.size()).isEqualTo(2);
+
+        release.countDown();
+        writer.close();
+
+        assertThat(delegate.messages).containsExactly("request-1", "response-1", "request-2");
+        assertThat(meterRegistry.get("filmorate.http.log.written").counter().count()).isEqualTo(3);
+        assertThat(writer.isActive()).isFalse();
+    }
+
+    @Test
+    void testSamplingUsesFirstMatchingPattern() {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        rates.put("/actuator/**", 0.0);
+        rates.put("/films/*/like/*", 0.5);
+        SamplingRequestCondition condition = new SamplingRequestCondition(rates, 1.0);
+
+        assertThat(condition.rateFor("/films/1/like/2")).isEqualTo(0.5);
+        assertThat(condition.rateFor("/films/1")).isEqualTo(1.0);
+        assertThat(condition.test(request("/actuator/prometheus"))).isFalse();
+        assertThat(condition.test(request("/films"))).isTrue();
+    }
+
+    private static HttpRequest request(String path) {
+        HttpRequest request = Mockito.mock(HttpRequest.class);
+        when(request.getPath()).thenReturn(path);
+        return request;
+    }
+
+    private static class BlockingWriter implements HttpLogWriter {
+
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final CountDownLatch blocked;
+        private final CountDownLatch release;
+
+        BlockingWriter(CountDownLatch blocked, CountDownLatch release) {
+            this.blocked = blocked;
+            this.release = release;
+        }
+
+        @Override
+        public void write(Precorrelation precorrelation, String request) throws IOException {
+            append(request);
+        }
+
+        @Override
+        public void write(Correlation correlation, String response) throws IOException {
+            append(response);
+        }
+
+        private void append(String message) {
+            blocked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(message);
+        }
+    }
+}
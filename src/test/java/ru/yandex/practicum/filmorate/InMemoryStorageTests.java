@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.IntHashSet;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+class InMemoryStorageTests {
+
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+
+    InMemoryStorageTests() {
+        ReferenceDataCache referenceData = Mockito.mock(ReferenceDataCache.class);
+        when(referenceData.getMpaById(anyInt()))
+                .thenAnswer(invocation -> new MpaRating(invocation.getArgument(0), "G"));
+        when(referenceData.getGenreById(anyInt()))
+                .thenAnswer(invocation -> new Genre(invocation.getArgument(0), "Комедия"));
+        this.filmStorage = new InMemoryFilmStorage(referenceData, new ContentVersions(referenceData),
+                userStorage);
+    }
+
+    @Test
+    void testIntHashSet() {
+        IntHashSet set = new IntHashSet();
+        for (int i = 1; i <= 1000; i++) {
+            assertThat(set.add(i)).isTrue();
+        }
+        assertThat(set.add(500)).isFalse();
+
+        for (int i = 1; i <= 1000; i += 2) {
+            assertThat(set.remove(i)).isTrue();
+        }
+
+        assertThat(set.size()).isEqualTo(500);
+        assertThat(set.contains(499)).isFalse();
+        assertThat(set.contains(500)).isTrue();
+        assertThat(set.toSortedArray()).startsWith(2, 4, 6).endsWith(998, 1000);
+    }
+
+    @Test
+    void testConcurrentAddFilmAndLikes() throws InterruptedException {
+        Film film = filmStorage.addFilm(newFilm("Фильм"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 1; i <= 1000; i++) {
+            int index = i;
+            executor.execute(() -> {
+                filmStorage.addFilm(newFilm("Фильм " + index));
+                User user = userStorage.createUser(new User(0, "user" + index + "@example.com",
+                        "user" + index, "User", LocalDate.of(2000, 1, 1)));
+                filmStorage.addLike(film.getId(), user.getId());
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(filmStorage.getAllFilms()).hasSize(1001)
+                .extracting(Film::getId)
+                .doesNotHaveDuplicates()
+                .isSorted();
+        assertThat(filmStorage.getMostPopularFilms(1)).containsExactly(film);
+    }
+
+    @Test
+    void testLikeRequiresExistingUser() {
+        Film film = filmStorage.addFilm(newFilm("Фильм"));
+
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId(), 999))
+                .isInstanceOf(NotFoundException.class);
+        assertThat(filmStorage.removeLike(film.getId(), 999)).isFalse();
+    }
+
+    @Test
+    void testFriendsAreOneDirectional() {
+        User user = userStorage.createUser(
+                new User(0, "test1@example.com", "user1", "User1", LocalDate.of(2000, 1, 1)));
+        User friend = userStorage.createUser(
+                new User(0, "test2@example.com", "user2", "User2", LocalDate.of(2001, 1, 1)));
+
+        userStorage.addFriend(user.getId(), friend.getId());
+        userStorage.addFriend(user.getId(), friend.getId());
+
+        assertThat(userStorage.getFriends(user.getId())).containsExactly(friend);
+        assertThat(userStorage.getFriends(friend.getId())).isEmpty();
+        assertThatThrownBy(() -> userStorage.addFriend(user.getId(), 999))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    private Film newFilm(String name) {
+        return new Film(0, name, "Описание", LocalDate.of(2000, 1, 1), 100,
+                List.of(new Genre(1, null)), new MpaRating(1, null));
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class LikeWriteBufferTests {
+
+    private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LikeWriteBuffer buffer = new LikeWriteBuffer(filmStorage, meterRegistry, 2);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testChangesForSamePairAreCoalesced() {
+        assertThat(buffer.offer(new LikeChange(1, 1, true))).isTrue();
+        assertThat(buffer.offer(new LikeChange(1, 1, false))).isTrue();
+        assertThat(buffer.offer(new LikeChange(2, 1, true))).isTrue();
+        assertThat(buffer.offer(new LikeChange(3, 1, true))).isFalse();
+        assertThat(meterRegistry.get("filmorate.likes.buffer.depth").gauge().value()).isEqualTo(2);
+
+        buffer.flush();
+
+        ArgumentCaptor<Collection<LikeChange>> changes = ArgumentCaptor.forClass(Collection.class);
+        verify(filmStorage).applyLikeChanges(changes.capture());
+        assertThat(changes.getValue())
+                .containsExactly(new LikeChange(1, 1, false), new LikeChange(2, 1, true));
+        assertThat(buffer.size()).isZero();
+        assertThat(meterRegistry.get("filmorate.likes.buffer.flush").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testCloseFlushesAndRejectsNewChanges() {
+        buffer.offer(new LikeChange(1, 1, true));
+
+        buffer.close();
+
+        verify(filmStorage).applyLikeChanges(any());
+        assertThat(buffer.offer(new LikeChange(1, 2, true))).isFalse();
+        buffer.flush();
+        verify(filmStorage, Mockito.times(1)).applyLikeChanges(any());
+        verify(filmStorage, never()).addLike(Mockito.anyInt(), Mockito.anyInt());
+    }
+
+    @Test
+    void testDirectWriteWaitsForBatchInFlight() throws Exception {
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch batchStarted = new CountDownLatch(1);
+        CountDownLatch releaseBatch = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            batchStarted.countDown();
+            releaseBatch.await(5, TimeUnit.SECONDS);
+            writes.add("batch");
+            return null;
+        }).when(filmStorage).applyLikeChanges(any());
+
+        buffer.offer(new LikeChange(1, 1, true));
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(buffer::flush);
+        assertThat(batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Более позднее изменение той же пары пишется только после пакета
+        CompletableFuture<Boolean> direct = CompletableFuture.supplyAsync(() ->
+                buffer.writeThrough(new LikeChange(1, 1, false), () -> writes.add("direct")));
+        Thread.sleep(100);
+        assertThat(writes).isEmpty();
+
+        releaseBatch.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+        direct.get(5, TimeUnit.SECONDS);
+        assertThat(writes).containsExactly("batch", "direct");
+    }
+
+    @Test
+    void testDirectWriteSupersedesPendingChange() {
+        buffer.offer(new LikeChange(1, 1, true));
+        buffer.offer(new LikeChange(2, 1, true));
+
+        assertThat(buffer.writeThrough(new LikeChange(1, 1, false), () -> true)).isTrue();
+        assertThat(buffer.size()).isOne();
+    }
+}
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.metrics.SqlStatementsPerRequestFilter;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metrics-tests")
+@AutoConfigureMockMvc
+class MetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Test
+    void testSqlStatementsAndStorageTimersAreRecorded() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            filmService.addFilm(new Film(0, "Фильм " + i, "Описание фильма",
+                    LocalDate.of(2000, 1, 1), 100, List.of(new Genre(1, null)),
+                    new MpaRating(1, null)));
+        }
+
+        mockMvc.perform(get("/films")).andExpect(status().isOk());
+        mockMvc.perform(get("/genres")).andExpect(status().isOk());
+
+        assertThat(meterRegistry.get(SqlStatementsPerRequestFilter.METRIC_NAME)
+                .tag("uri", "/films").summary().max()).isEqualTo(2);
+        assertThat(meterRegistry.get(SqlStatementsPerRequestFilter.METRIC_NAME)
+                .tag("uri", "/genres").summary().max()).isZero();
+        assertThat(meterRegistry.get("filmorate.storage")
+                .tag("method", "getAllFilms").timer().count()).isEqualTo(1);
+    }
+}
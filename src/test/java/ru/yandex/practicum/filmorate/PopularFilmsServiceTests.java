@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.service.PopularFilmsService;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+class PopularFilmsServiceTests {
+
+    private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+    private final ReferenceDataCache referenceData = Mockito.mock(ReferenceDataCache.class);
+    private final ContentVersions contentVersions = new ContentVersions(referenceData);
+    private final PopularFilmsService popularFilmsService = new PopularFilmsService(filmStorage,
+            referenceData, contentVersions, new SimpleMeterRegistry());
+    private final Map<Integer, Film> films = new LinkedHashMap<>();
+    private final List<int[]> likes = new ArrayList<>();
+
+    PopularFilmsServiceTests() {
+        when(filmStorage.getFilmsByIds(any())).thenAnswer(invocation ->
+                Arrays.stream((int[]) invocation.getArgument(0)).mapToObj(films::get).toList());
+        doAnswer(invocation -> {
+            Consumer<Film> action = invocation.getArgument(0);
+            films.values().forEach(action);
+            return null;
+        }).when(filmStorage).forEachFilm(any());
+        doAnswer(invocation -> {
+            FilmStorage.LikeConsumer action = invocation.getArgument(0);
+            likes.forEach(like -> action.accept(like[0], like[1]));
+            return null;
+        }).when(filmStorage).forEachLike(any());
+    }
+
+    @Test
+    void testRankingsByGenreAndYear() {
+        film(1, 1999, 1, 2);
+        film(2, 1999, 2);
+        film(3, 2005, 2);
+        film(4, 1999, 3);
+        like(1, 1, 2);
+        like(2, 1, 2, 3);
+        like(3, 1, 2, 3, 4);
+        popularFilmsService.rebuild();
+
+        assertThat(popular(10, 2, null)).containsExactly(3, 2, 1);
+        assertThat(popular(10, null, 1999)).containsExactly(2, 1, 4);
+        assertThat(popular(10, 2, 1999)).containsExactly(2, 1);
+        assertThat(popular(1, 2, null)).containsExactly(3);
+        assertThat(popular(10, 4, null)).isEmpty();
+        assertThat(popular(10, null, 2010)).isEmpty();
+    }
+
+    @Test
+    void testLikeChangesReorderRankings() {
+        film(1, 2000, 1);
+        film(2, 2000, 1);
+        popularFilmsService.rebuild();
+        // При равенстве лайков выше фильм с меньшим ID
+        assertThat(popular(10, 1, null)).containsExactly(1, 2);
+
+        popularFilmsService.onLikeChanged(new LikeChange(2, 1, true));
+        assertThat(popular(10, 1, 2000)).containsExactly(2, 1);
+
+        popularFilmsService.onLikeChanged(new LikeChange(1, 1, true));
+        popularFilmsService.onLikeChanged(new LikeChange(1, 2, true));
+        popularFilmsService.onLikeChanged(new LikeChange(2, 1, false));
+        assertThat(popular(10, null, 2000)).containsExactly(1, 2);
+    }
+
+    @Test
+    void testRepeatedLikeChangesAreCountedOnce() {
+        film(1, 2000, 1);
+        film(2, 2000, 1);
+        like(2, 1);
+        popularFilmsService.rebuild();
+
+        // Повтор из буфера отложенной записи и лайк, уже прочитанный перестроением
+        popularFilmsService.onLikeChanged(new LikeChange(1, 1, true));
+        popularFilmsService.onLikeChanged(new LikeChange(1, 1, true));
+        popularFilmsService.onLikeChanged(new LikeChange(2, 1, true));
+        popularFilmsService.onLikeChanged(new LikeChange(1, 2, true));
+        assertThat(popular(10, 1, null)).containsExactly(1, 2);
+
+        // Удаление лайка, которого не было
+        popularFilmsService.onLikeChanged(new LikeChange(1, 3, false));
+        popularFilmsService.onLikeChanged(new LikeChange(1, 2, false));
+        popularFilmsService.onLikeChanged(new LikeChange(1, 2, false));
+        assertThat(popular(10, null, 2000)).containsExactly(1, 2);
+        popularFilmsService.onLikeChanged(new LikeChange(1, 1, false));
+        assertThat(popular(10, null, 2000)).containsExactly(2, 1);
+    }
+
+    @Test
+    void testFilmChangesMoveItBetweenRankings() {
+        film(1, 2000, 1);
+        popularFilmsService.rebuild();
+        popularFilmsService.onLikeChanged(new LikeChange(1, 1, true));
+
+        popularFilmsService.onFilmChanged(film(1, 2001, 2));
+        popularFilmsService.onFilmChanged(film(2, 2001, 1, 2));
+
+        assertThat(popular(10, 1, null)).containsExactly(2);
+        assertThat(popular(10, null, 2000)).isEmpty();
+        // Лайк фильма сохраняется при смене жанров
+        assertThat(popular(10, 2, 2001)).containsExactly(1, 2);
+    }
+
+    @Test
+    void testEtagChangesAfterRankingsAreUpdated() {
+        film(1, 2000, 1);
+        popularFilmsService.rebuild();
+        String etag = contentVersions.popularFilmsEtag();
+
+        // Версию увеличивает сам сервис рейтингов, уже применив изменение
+        popularFilmsService.onLikeChanged(new LikeChange(1, 1, true));
+
+        assertThat(contentVersions.popularFilmsEtag()).isNotEqualTo(etag);
+        assertThat(popular(10, 1, null)).containsExactly(1);
+    }
+
+    @Test
+    void testUnknownGenreIsNotFound() {
+        when(referenceData.getGenreById(eq(99))).thenThrow(new NotFoundException("Жанр не найден"));
+
+        assertThatThrownBy(() -> popularFilmsService.getMostPopularFilms(10, 99, null))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    private List<Integer> popular(int count, Integer genreId, Integer year) {
+        return popularFilmsService.getMostPopularFilms(count, genreId, year).stream().map(Film::getId).toList();
+    }
+
+    private Film film(int id, int year, int... genreIds) {
+        List<Genre> genres = Arrays.stream(genreIds).mapToObj(genreId -> new Genre(genreId, null)).toList();
+        Film film = new Film(id, "Фильм " + id, null, LocalDate.of(year, 6, 1), 100, genres, null);
+        films.put(id, film);
+        return film;
+    }
+
+    private void like(int filmId, int... userIds) {
+        for (int userId : userIds) {
+            likes.add(new int[]{filmId, userId});
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// JdbcTemplate, считающий количество выполненных SQL-запросов
+public class QueryCountingJdbcTemplate extends JdbcTemplate {
+
+    private int count;
+
+    public QueryCountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        count++;
+        super.applyStatementSettings(stmt);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void resetCount() {
+        count = 0;
+    }
+}
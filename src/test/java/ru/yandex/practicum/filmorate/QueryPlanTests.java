@@ -0,0 +1,210 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.config.CacheConfig;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Регрессионная проверка планов: каждый запрос хранилищ выполняется и разбирается EXPLAIN.
+// Полный просмотр таблицы (tableScan) допускается только в методах, читающих таблицу целиком.
+// Тест сам открывает транзакцию на записывающем DataSource и откатывает ее в конце.
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QueryPlanTests {
+
+    private static final int USERS = 200;
+    private static final int FILMS = 200;
+
+    private static final Set<String> FULL_SCAN_METHODS = Set.of(
+            "getAllFilms", "forEachFilm", "forEachLike", "reconcileLikesCounts",
+            "getAllUsers", "forEachUser", "reload");
+
+    private final SqlRecordingDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate rollbackTransaction;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FriendGraphIndex friendGraph;
+    private int[] userIds;
+    private int[] filmIds;
+
+    @Autowired
+    QueryPlanTests(DataSource dataSource) {
+        this.dataSource = new SqlRecordingDataSource(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        this.rollbackTransaction = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+        ReferenceDataCache referenceData = new ReferenceDataCache(jdbcTemplate);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        this.filmStorage = new FilmDbStorage(jdbcTemplate, referenceData,
+                new ContentVersions(referenceData),
+                new EntityCache<>("films", 1, Duration.ofMinutes(5), CacheConfig::copyFilm, meterRegistry));
+        this.friendGraph = new FriendGraphIndex(jdbcTemplate);
+        this.userStorage = new UserDbStorage(jdbcTemplate, friendGraph,
+                new EntityCache<>("users", 1, Duration.ofMinutes(5), CacheConfig::copyUser, meterRegistry));
+    }
+
+    @Test
+    void testStorageQueriesUseIndexes() {
+        inRolledBackTransaction(this::checkStorageQueries);
+    }
+
+    @Test
+    void testReverseAccessPathsUseSecondaryIndexes() {
+        inRolledBackTransaction(() -> {
+            seed();
+
+            assertThat(explain("SELECT film_id FROM film_likes WHERE user_id = ?"))
+                    .contains("FILM_LIKES_USER_IDX");
+            assertThat(explain("SELECT user_id FROM friendships WHERE friend_id = ?"))
+                    .contains("FRIENDSHIPS_FRIEND_IDX");
+            assertThat(explain("SELECT film_id FROM film_genres WHERE genre_id = ?"))
+                    .contains("FILM_GENRES_GENRE_IDX");
+        });
+    }
+
+    private void checkStorageQueries() {
+        seed();
+
+        Map<String, Runnable> calls = new LinkedHashMap<>();
+        calls.put("addFilm", () -> filmStorage.addFilm(newFilm("Новый фильм")));
+        calls.put("addFilms", () -> filmStorage.addFilms(List.of(newFilm("Фильм А"), newFilm("Фильм Б"))));
+        calls.put("updateFilm", () -> {
+            Film film = newFilm("Обновленный фильм");
+            film.setId(filmIds[0]);
+            filmStorage.updateFilm(film);
+        });
+        calls.put("getFilmById", () -> filmStorage.getFilmById(filmIds[1]));
+        calls.put("getAllFilms", filmStorage::getAllFilms);
+        calls.put("getFilmsPage", () -> filmStorage.getFilmsPage(filmIds[10], 20));
+        calls.put("getFilmsByIds", () -> filmStorage.getFilmsByIds(new int[]{filmIds[5], filmIds[3], filmIds[7]}));
+        calls.put("forEachFilm", () -> filmStorage.forEachFilm(film -> { }));
+        calls.put("addLike", () -> filmStorage.addLike(filmIds[3], userIds[4]));
+        calls.put("removeLike", () -> filmStorage.removeLike(filmIds[3], userIds[4]));
+        calls.put("applyLikeChanges", () -> filmStorage.applyLikeChanges(List.of(
+                new LikeChange(filmIds[4], userIds[5], true), new LikeChange(filmIds[5], userIds[6], false))));
+        calls.put("forEachLike", () -> filmStorage.forEachLike((filmId, userId) -> { }));
+        calls.put("forEachLikeSince", () -> filmStorage.forEachLikeSince(System.currentTimeMillis(),
+                (filmId, userId, likedAt) -> { }));
+        calls.put("getMostPopularFilms", () -> filmStorage.getMostPopularFilms(10));
+        calls.put("reconcileLikesCounts", filmStorage::reconcileLikesCounts);
+        calls.put("createUser", () -> userStorage.createUser(newUser("new")));
+        calls.put("createUsers", () -> userStorage.createUsers(List.of(newUser("batch1"), newUser("batch2"))));
+        calls.put("updateUser", () -> {
+            User user = newUser("updated");
+            user.setId(userIds[0]);
+            userStorage.updateUser(user);
+        });
+        calls.put("getUserById", () -> userStorage.getUserById(userIds[1]));
+        calls.put("getAllUsers", userStorage::getAllUsers);
+        calls.put("getUsersPage", () -> userStorage.getUsersPage(userIds[10], 20));
+        calls.put("forEachUser", () -> userStorage.forEachUser(user -> { }));
+        calls.put("addFriend", () -> userStorage.addFriend(userIds[3], userIds[150]));
+        calls.put("removeFriend", () -> userStorage.removeFriend(userIds[3], userIds[150]));
+        calls.put("getFriends", () -> userStorage.getFriends(userIds[0]));
+        calls.put("getCommonFriends", () -> userStorage.getCommonFriends(userIds[0], userIds[1]));
+        calls.put("getFriendsCount", () -> userStorage.getFriendsCount(userIds[0]));
+        calls.put("reload", friendGraph::reload);
+
+        // Новый метод хранилища без проверки плана - ошибка: его нужно добавить в calls
+        assertThat(calls.keySet()).containsAll(publicMethods(FilmDbStorage.class, UserDbStorage.class));
+
+        Map<String, String> scans = new TreeMap<>();
+        int explained = 0;
+        for (Map.Entry<String, Runnable> call : calls.entrySet()) {
+            dataSource.drainStatements();
+            call.getValue().run();
+            List<String> statements = dataSource.drainStatements();
+            if (FULL_SCAN_METHODS.contains(call.getKey())) {
+                continue;
+            }
+            for (String sql : statements) {
+                String plan = explain(sql);
+                explained++;
+                if (plan.contains(".tableScan")) {
+                    scans.put(call.getKey(), plan);
+                }
+            }
+        }
+
+        assertThat(explained).isPositive();
+        assertThat(scans).as("Запросы с полным просмотром таблицы").isEmpty();
+    }
+
+    private void inRolledBackTransaction(Runnable action) {
+        rollbackTransaction.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            action.run();
+        });
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    // Данных достаточно, чтобы оптимизатор предпочитал индексы полному просмотру
+    private void seed() {
+        userIds = userStorage.createUsers(IntStream.range(0, USERS)
+                        .mapToObj(i -> newUser("user" + i))
+                        .toList())
+                .stream().mapToInt(User::getId).toArray();
+        filmIds = filmStorage.addFilms(IntStream.range(0, FILMS)
+                        .mapToObj(i -> newFilm("Фильм " + i))
+                        .toList())
+                .stream().mapToInt(Film::getId).toArray();
+        List<Object[]> likes = new ArrayList<>();
+        List<Object[]> friendships = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            for (int j = 1; j <= 5; j++) {
+                likes.add(new Object[]{filmIds[(i * 7 + j * 13) % FILMS], userIds[i]});
+                friendships.add(new Object[]{userIds[i], userIds[(i + j * 17) % USERS], j % 2 == 0});
+            }
+        }
+        jdbcTemplate.batchUpdate("MERGE INTO film_likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)",
+                likes);
+        jdbcTemplate.batchUpdate("MERGE INTO friendships (user_id, friend_id, is_confirmed) "
+                + "KEY (user_id, friend_id) VALUES (?, ?, ?)", friendships);
+        filmStorage.reconcileLikesCounts();
+        friendGraph.reload();
+    }
+
+    private static Set<String> publicMethods(Class<?>... types) {
+        return Arrays.stream(types)
+                .flatMap(type -> Arrays.stream(type.getDeclaredMethods()))
+                .filter(method -> Modifier.isPublic(method.getModifiers()) && !method.isSynthetic())
+                .map(Method::getName)
+                .collect(Collectors.toSet());
+    }
+
+    private static Film newFilm(String name) {
+        return new Film(0, name, "Описание", LocalDate.of(2000, 1, 1), 100,
+                List.of(new Genre(1, null), new Genre(2, null)), new MpaRating(1, null));
+    }
+
+    private static User newUser(String login) {
+        return new User(0, login + "@example.com", login, "User", LocalDate.of(2000, 1, 1));
+    }
+}
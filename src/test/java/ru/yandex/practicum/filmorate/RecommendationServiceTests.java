@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+class RecommendationServiceTests {
+
+    private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+    private final RecommendationService recommendationService = new RecommendationService(filmStorage,
+            Mockito.mock(UserService.class), new SimpleMeterRegistry());
+    private final List<int[]> likes = new ArrayList<>();
+
+    RecommendationServiceTests() {
+        when(filmStorage.getFilmsByIds(any())).thenAnswer(invocation ->
+                Arrays.stream((int[]) invocation.getArgument(0))
+                        .mapToObj(id -> new Film(id, "Фильм " + id, null, null, 100, null, null))
+                        .toList());
+        doAnswer(invocation -> {
+            FilmStorage.LikeConsumer action = invocation.getArgument(0);
+            likes.forEach(like -> action.accept(like[0], like[1]));
+            return null;
+        }).when(filmStorage).forEachLike(any());
+    }
+
+    @Test
+    void testSimilarFilmsAreRankedByCosineSimilarity() {
+        // Фильм 1 лайкнули пользователи 1-3; фильм 2 - те же трое; фильм 3 - один из них и еще двое
+        like(1, 1, 2, 3);
+        like(2, 1, 2, 3);
+        like(3, 1, 4, 5);
+        like(4, 6);
+        recommendationService.rebuild();
+
+        assertThat(recommendationService.getSimilarFilms(1, 10))
+                .extracting(Film::getId).containsExactly(2, 3);
+        assertThat(recommendationService.getSimilarFilms(4, 10)).isEmpty();
+    }
+
+    @Test
+    void testIncrementalUpdatesMatchFullRebuild() {
+        like(1, 1, 2);
+        like(2, 1);
+        like(3, 2);
+        recommendationService.rebuild();
+
+        recommendationService.onLikeChanged(new LikeChange(3, 1, true));
+        recommendationService.onLikeChanged(new LikeChange(2, 1, false));
+        recommendationService.onLikeChanged(new LikeChange(2, 3, true));
+        List<Integer> incremental = recommendationService.getSimilarFilms(1, 10).stream()
+                .map(Film::getId).toList();
+
+        likes.clear();
+        like(1, 1, 2);
+        like(2, 3);
+        like(3, 1, 2);
+        recommendationService.rebuild();
+
+        assertThat(incremental).containsExactly(3);
+        assertThat(recommendationService.getSimilarFilms(1, 10))
+                .extracting(Film::getId).containsExactlyElementsOf(incremental);
+    }
+
+    @Test
+    void testRecommendationsExcludeLikedFilms() {
+        like(1, 1, 2);
+        like(2, 1, 2);
+        like(3, 2);
+        recommendationService.rebuild();
+
+        assertThat(recommendationService.getRecommendations(1, 10))
+                .extracting(Film::getId).containsExactly(3);
+        assertThat(recommendationService.getRecommendations(99, 10)).isEmpty();
+    }
+
+    private void like(int filmId, int... userIds) {
+        for (int userId : userIds) {
+            likes.add(new int[]{filmId, userId});
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.datasource.ReadYourWritesFilter;
+import ru.yandex.practicum.filmorate.datasource.ReplicaLagMonitor;
+import ru.yandex.practicum.filmorate.datasource.ReplicaRoutingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Две независимые базы H2 вместо основной базы и реплики: репликации между ними нет,
+// поэтому по содержимому ответа видно, из какой базы прочитаны данные
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica-routing-primary",
+        "filmorate.datasource.replica.url=jdbc:h2:mem:replica-routing-replica;DB_CLOSE_DELAY=-1",
+        "filmorate.datasource.replica.max-lag=1m",
+        "filmorate.datasource.replica.heartbeat-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingTests {
+
+    private static final String REPLICA_ONLY_FILM = "Только на реплике";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+
+    @Autowired
+    ReplicaRoutingTests(@Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+    }
+
+    @BeforeEach
+    void setUpReplica() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(replica.getDataSource());
+        replica.update("DELETE FROM films");
+        replica.update("INSERT INTO films (name, description, release_date, duration, mpa_id) "
+                + "VALUES (?, 'Описание', DATE '2000-01-01', 100, 1)", REPLICA_ONLY_FILM);
+    }
+
+    @Test
+    void testReadOnlyOperationsUseFreshReplica() {
+        replicaLag(Duration.ZERO);
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+
+        assertThat(filmStorage.getAllFilms()).extracting(Film::getName).contains(REPLICA_ONLY_FILM);
+
+        filmStorage.addFilm(newFilm("Записан в основную базу"));
+        assertThat(countFilms(primary, "Записан в основную базу")).isOne();
+        assertThat(countFilms(replica, "Записан в основную базу")).isZero();
+        assertThat(countFilms(primary, REPLICA_ONLY_FILM)).isZero();
+    }
+
+    @Test
+    void testLaggingReplicaIsBypassed() {
+        replicaLag(Duration.ofHours(1));
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+
+        assertThat(filmStorage.getAllFilms()).extracting(Film::getName).doesNotContain(REPLICA_ONLY_FILM);
+    }
+
+    @Test
+    void testClientReadsOwnWritesFromPrimary() throws Exception {
+        replicaLag(Duration.ZERO);
+
+        Cookie lastWrite = mockMvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(newFilm("Свой фильм"))))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE_NAME))
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // Автор записи читает основную базу, остальные клиенты - реплику
+        assertThat(filmNames("/films", lastWrite)).contains("Свой фильм").doesNotContain(REPLICA_ONLY_FILM);
+        assertThat(filmNames("/films", null)).contains(REPLICA_ONLY_FILM).doesNotContain("Свой фильм");
+
+        Cookie expired = new Cookie(ReadYourWritesFilter.COOKIE_NAME,
+                Long.toString(System.currentTimeMillis() - Duration.ofMinutes(2).toMillis()));
+        assertThat(filmNames("/films", expired)).contains(REPLICA_ONLY_FILM);
+    }
+
+    @Test
+    void testConditionalGetReadsPrimary() throws Exception {
+        replicaLag(Duration.ZERO);
+        filmStorage.addFilm(newFilm("Новый фильм"));
+
+        // ETag популярных фильмов - версия этого процесса, ответ под ним не может быть старее основной базы
+        assertThat(filmNames("/films/popular", null)).contains("Новый фильм").doesNotContain(REPLICA_ONLY_FILM);
+    }
+
+    @Test
+    void testOnPrimaryKeepsEarlierPin() {
+        replicaLag(Duration.ZERO);
+
+        ReplicaRoutingDataSource.pinToPrimary();
+        try {
+            ReplicaRoutingDataSource.onPrimary(() -> filmStorage.getAllFilms());
+            assertThat(filmStorage.getAllFilms()).extracting(Film::getName).doesNotContain(REPLICA_ONLY_FILM);
+        } finally {
+            ReplicaRoutingDataSource.unpin();
+        }
+        assertThat(filmStorage.getAllFilms()).extracting(Film::getName).contains(REPLICA_ONLY_FILM);
+    }
+
+    // Отметка на реплике, отстающая от текущего времени на lag
+    private void replicaLag(Duration lag) {
+        replica.update("MERGE INTO replica_heartbeat (id, beat_at) KEY (id) VALUES (1, ?)",
+                Instant.now().minus(lag).atOffset(ZoneOffset.UTC));
+        lagMonitor.check();
+    }
+
+    private List<String> filmNames(String path, Cookie cookie) throws Exception {
+        var request = get(path).param("count", "1000");
+        if (cookie != null) {
+            request.cookie(cookie);
+        }
+        String json = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        return List.of(objectMapper.readValue(json, Film[].class)).stream().map(Film::getName).toList();
+    }
+
+    private static int countFilms(JdbcTemplate jdbcTemplate, String name) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films WHERE name = ?", Integer.class, name);
+    }
+
+    private static Film newFilm(String name) {
+        return new Film(0, name, "Описание фильма", LocalDate.of(2000, 1, 1), 100, List.of(),
+                new MpaRating(1, null));
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Инициализация отключена (spring.sql.init.mode=never): схема создается вне приложения до запуска
+// контекста, и приложение не должно ни падать, ни менять ее
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + SqlInitDisabledTests.URL,
+        "spring.sql.init.mode=never",
+        "filmorate.sql.init.versioned=true"
+})
+@AutoConfigureMockMvc
+class SqlInitDisabledTests {
+
+    static final String URL = "jdbc:h2:mem:sql-init-disabled-tests;DB_CLOSE_DELAY=-1";
+
+    static {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(new DriverManagerDataSource(URL, "sa", "password"));
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testApplicationStartsWithoutRunningScripts() throws Exception {
+        mockMvc.perform(get("/genres")).andExpect(status().isOk());
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables "
+                + "WHERE LOWER(table_name) = 'schema_version'", Integer.class)).isZero();
+    }
+}
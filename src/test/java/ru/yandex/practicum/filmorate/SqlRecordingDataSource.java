@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+// DataSource, запоминающий текст всех подготовленных и выполненных через соединения SQL-запросов
+public class SqlRecordingDataSource extends DelegatingDataSource {
+
+    private final Set<String> statements = new LinkedHashSet<>();
+
+    public SqlRecordingDataSource(DataSource target) {
+        super(target);
+    }
+
+    public synchronized List<String> drainStatements() {
+        List<String> drained = List.copyOf(statements);
+        statements.clear();
+        return drained;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection target = super.getConnection();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("prepare")) {
+                        record((String) args[0]);
+                    }
+                    Object result = invoke(target, method, args);
+                    if (method.getName().equals("createStatement")) {
+                        return recordingStatement((Statement) result);
+                    }
+                    return result;
+                });
+    }
+
+    // Запросы без параметров JdbcTemplate выполняет через Statement
+    private Statement recordingStatement(Statement target) {
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    if ((method.getName().startsWith("execute") || method.getName().equals("addBatch"))
+                            && args != null && args[0] instanceof String sql) {
+                        record(sql);
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    private synchronized void record(String sql) {
+        statements.add(sql);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
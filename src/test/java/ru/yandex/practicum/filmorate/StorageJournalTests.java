@@ -0,0 +1,168 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ContentVersions;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryPersistence;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.StorageJournal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+class StorageJournalTests {
+
+    @TempDir
+    private Path directory;
+
+    private Storages storages;
+
+    @AfterEach
+    void tearDown() {
+        if (storages != null) {
+            storages.journal.close();
+        }
+    }
+
+    @Test
+    void testStateIsRestoredFromJournal() throws InterruptedException {
+        storages = open();
+        User first = storages.users.createUser(newUser(1));
+        User second = storages.users.createUser(newUser(2));
+        storages.users.addFriend(first.getId(), second.getId());
+        storages.users.addFriend(second.getId(), first.getId());
+        storages.users.removeFriend(second.getId(), first.getId());
+        Film film = storages.films.addFilm(newFilm("Фильм"));
+        Film other = storages.films.addFilm(newFilm("Другой фильм"));
+        storages.films.updateFilm(new Film(other.getId(), "Новое название", null, null, 90,
+                List.of(new Genre(2, null), new Genre(1, null)), new MpaRating(3, null)));
+        storages.films.addLike(other.getId(), first.getId());
+        storages.films.removeLike(other.getId(), first.getId());
+
+        // Параллельные операции собираются в общие пачки перед fsync
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 3; i <= 200; i++) {
+            int index = i;
+            executor.execute(() -> {
+                User user = storages.users.createUser(newUser(index));
+                storages.films.addLike(film.getId(), user.getId());
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        storages.journal.close();
+
+        storages = open();
+        assertThat(storages.users.getAllUsers()).hasSize(200);
+        assertThat(storages.users.getFriends(first.getId())).extracting(User::getId).containsExactly(second.getId());
+        assertThat(storages.users.getFriends(second.getId())).isEmpty();
+        assertThat(storages.films.getMostPopularFilms(2)).extracting(Film::getId)
+                .containsExactly(film.getId(), other.getId());
+
+        Film restored = storages.films.getFilmById(other.getId());
+        assertThat(restored.getName()).isEqualTo("Новое название");
+        assertThat(restored.getReleaseDate()).isNull();
+        assertThat(restored.getMpa()).isEqualTo(new MpaRating(3, "PG-13"));
+        assertThat(restored.getGenres()).containsExactly(new Genre(1, "Комедия"), new Genre(2, "Комедия"));
+
+        // Счетчик ID продолжается после восстановленных записей
+        assertThat(storages.users.createUser(newUser(201)).getId()).isEqualTo(201);
+        assertThat(storages.films.addFilm(newFilm("Третий")).getId()).isEqualTo(3);
+    }
+
+    @Test
+    void testSnapshotReplacesOldJournal() throws IOException {
+        storages = open();
+        User user = storages.users.createUser(newUser(1));
+        Film film = storages.films.addFilm(newFilm("Фильм"));
+        storages.films.addLike(film.getId(), user.getId());
+        storages.persistence.snapshot();
+
+        storages.films.removeLike(film.getId(), user.getId());
+        Film other = storages.films.addFilm(newFilm("После снимка"));
+        storages.films.addLike(other.getId(), user.getId());
+        storages.journal.close();
+
+        assertThat(fileNames()).containsExactlyInAnyOrder("snapshot-2.bin", "journal-2.log");
+
+        storages = open();
+        assertThat(storages.films.getAllFilms()).extracting(Film::getName).containsExactly("Фильм", "После снимка");
+        assertThat(storages.films.getMostPopularFilms(1)).extracting(Film::getId).containsExactly(other.getId());
+        assertThat(storages.users.getUserById(user.getId())).isEqualTo(user);
+        assertThat(fileNames()).containsExactlyInAnyOrder("snapshot-2.bin", "journal-2.log", "journal-3.log");
+    }
+
+    @Test
+    void testTornTailIsDiscarded() throws IOException {
+        storages = open();
+        storages.users.createUser(newUser(1));
+        storages.users.createUser(newUser(2));
+        storages.journal.close();
+
+        // Сбой во время записи: от последней операции на диске остался только заголовок
+        Path segment = directory.resolve("journal-1.log");
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        storages = open();
+        assertThat(storages.users.getAllUsers()).extracting(User::getId).containsExactly(1, 2);
+        assertThat(Files.size(segment)).isEqualTo(validSize);
+    }
+
+    private Storages open() {
+        ReferenceDataCache referenceData = Mockito.mock(ReferenceDataCache.class);
+        when(referenceData.getMpaById(anyInt()))
+                .thenAnswer(invocation -> new MpaRating(invocation.getArgument(0), "PG-13"));
+        when(referenceData.getGenreById(anyInt()))
+                .thenAnswer(invocation -> new Genre(invocation.getArgument(0), "Комедия"));
+
+        StorageJournal journal = new StorageJournal(directory, new SimpleMeterRegistry());
+        InMemoryUserStorage users = new InMemoryUserStorage(Optional.of(journal));
+        InMemoryFilmStorage films = new InMemoryFilmStorage(referenceData, new ContentVersions(referenceData),
+                users, Optional.of(journal));
+        InMemoryPersistence persistence = new InMemoryPersistence(journal, films, users);
+        persistence.recover();
+        return new Storages(journal, users, films, persistence);
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).toList();
+        }
+    }
+
+    private static User newUser(int index) {
+        return new User(0, "user" + index + "@example.com", "user" + index, "User " + index,
+                LocalDate.of(2000, 1, 1));
+    }
+
+    private static Film newFilm(String name) {
+        return new Film(0, name, "Описание", LocalDate.of(2000, 1, 1), 100,
+                List.of(new Genre(1, null)), new MpaRating(1, null));
+    }
+
+    private record Storages(StorageJournal journal, InMemoryUserStorage users, InMemoryFilmStorage films,
+            InMemoryPersistence persistence) {
+    }
+}
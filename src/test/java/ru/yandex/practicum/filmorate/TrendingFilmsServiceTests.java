@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService;
+import ru.yandex.practicum.filmorate.service.TrendingFilmsService.Window;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+class TrendingFilmsServiceTests {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+    private final AtomicLong now = new AtomicLong(1_000_000 * HOUR + 30 * 60_000);
+    private final TrendingFilmsService trendingFilmsService = new TrendingFilmsService(filmStorage, now::get);
+    private final List<long[]> likes = new ArrayList<>();
+    private final List<Long> requestedSince = new ArrayList<>();
+
+    TrendingFilmsServiceTests() {
+        when(filmStorage.getFilmsByIds(any())).thenAnswer(invocation ->
+                Arrays.stream((int[]) invocation.getArgument(0))
+                        .mapToObj(id -> new Film(id, "Фильм " + id, null, null, 100, null, null))
+                        .toList());
+        doAnswer(invocation -> {
+            long since = invocation.getArgument(0);
+            FilmStorage.TimedLikeConsumer action = invocation.getArgument(1);
+            requestedSince.add(since);
+            likes.stream()
+                    .filter(like -> like[2] >= since)
+                    .forEach(like -> action.accept((int) like[0], (int) like[1], like[2]));
+            return null;
+        }).when(filmStorage).forEachLikeSince(anyLong(), any());
+    }
+
+    @Test
+    void testRebuildReadsOnlyLastWeek() {
+        like(1, 1, 2 * HOUR);
+        like(1, 2, 3 * HOUR);
+        like(2, 1, 30 * HOUR);
+        like(2, 2, 100 * HOUR);
+        like(3, 1, 8 * 24 * HOUR);
+        trendingFilmsService.rebuild();
+
+        assertThat(requestedSince).containsExactly(now.get() - now.get() % HOUR - 167 * HOUR);
+        assertThat(trending(Window.DAY)).containsExactly(1);
+        assertThat(trending(Window.WEEK)).containsExactly(1, 2);
+    }
+
+    @Test
+    void testOldBucketsExpireAsTimePasses() {
+        trendingFilmsService.rebuild();
+        trendingFilmsService.onLikeChanged(new LikeChange(1, 1, true));
+        trendingFilmsService.onLikeChanged(new LikeChange(1, 2, true));
+        now.addAndGet(2 * HOUR);
+        trendingFilmsService.onLikeChanged(new LikeChange(2, 1, true));
+        // Повторный лайк не учитывается дважды
+        trendingFilmsService.onLikeChanged(new LikeChange(2, 1, true));
+
+        assertThat(trending(Window.DAY)).containsExactly(1, 2);
+
+        now.addAndGet(23 * HOUR);
+        trendingFilmsService.expireBuckets();
+        assertThat(trending(Window.DAY)).containsExactly(2);
+        assertThat(trending(Window.WEEK)).containsExactly(1, 2);
+
+        now.addAndGet(6 * 24 * HOUR);
+        assertThat(trending(Window.DAY)).isEmpty();
+        assertThat(trending(Window.WEEK)).containsExactly(2);
+
+        now.addAndGet(30 * 24 * HOUR);
+        assertThat(trending(Window.WEEK)).isEmpty();
+    }
+
+    @Test
+    void testRemovedLikeLeavesBothWindows() {
+        trendingFilmsService.rebuild();
+        trendingFilmsService.onLikeChanged(new LikeChange(1, 1, true));
+        trendingFilmsService.onLikeChanged(new LikeChange(1, 2, true));
+        trendingFilmsService.onLikeChanged(new LikeChange(2, 1, true));
+        now.addAndGet(30 * HOUR);
+        trendingFilmsService.onLikeChanged(new LikeChange(2, 2, true));
+        trendingFilmsService.onLikeChanged(new LikeChange(1, 1, false));
+        trendingFilmsService.onLikeChanged(new LikeChange(1, 2, false));
+        // Лайк, поставленный до начала недели, на окна не влияет
+        trendingFilmsService.onLikeChanged(new LikeChange(3, 1, false));
+
+        assertThat(trending(Window.DAY)).containsExactly(2);
+        assertThat(trending(Window.WEEK)).containsExactly(2);
+    }
+
+    private List<Integer> trending(Window window) {
+        return trendingFilmsService.getTrendingFilms(window, 10).stream().map(Film::getId).toList();
+    }
+
+    // Лайк, поставленный ago миллисекунд назад
+    private void like(int filmId, int userId, long ago) {
+        likes.add(new long[]{filmId, userId, now.get() - ago});
+    }
+}
@@ -1,13 +1,18 @@
 package ru.yandex.practicum.filmorate;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.config.CacheConfig;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.FriendGraphIndex;
 import ru.yandex.practicum.filmorate.storage.UserDbStorage;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -17,11 +22,15 @@ import static org.assertj.core.api.Assertions.*;
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 class UserDbStorageTests {
 
+    private final JdbcTemplate jdbcTemplate;
     private final UserDbStorage userStorage;
 
     @Autowired
     public UserDbStorageTests(JdbcTemplate jdbcTemplate) {
-        this.userStorage = new UserDbStorage(jdbcTemplate);
+        this.jdbcTemplate = jdbcTemplate;
+        this.userStorage = new UserDbStorage(jdbcTemplate, new FriendGraphIndex(jdbcTemplate),
+                new EntityCache<>("users", 100, Duration.ofMinutes(5), CacheConfig::copyUser,
+                        new SimpleMeterRegistry()));
     }
 
     @Test
@@ -35,6 +44,18 @@ class UserDbStorageTests {
         assertThat(createdUser.getBirthday()).isEqualTo(LocalDate.of(2001, 1, 1));
     }
 
+    @Test
+    void testCreateUsersBatch() {
+        List<User> users = List.of(
+                new User(0, "test1@example.com", "user1", "User1", LocalDate.of(2000, 1, 1)),
+                new User(0, "test2@example.com", "user2", "User2", LocalDate.of(2001, 1, 1)));
+
+        userStorage.createUsers(users);
+
+        assertThat(users).extracting(User::getId).doesNotHaveDuplicates().doesNotContain(0);
+        assertThat(userStorage.getUserById(users.get(1).getId()).getLogin()).isEqualTo("user2");
+    }
+
     @Test
     void testUpdateUser() {
         User user = new User(0, "test@example.com", "user", "User", LocalDate.of(2001, 1, 1));
@@ -76,6 +97,22 @@ class UserDbStorageTests {
         assertThat(users).hasSize(2);
     }
 
+    @Test
+    void testGetUsersPage() {
+        for (int i = 1; i <= 5; i++) {
+            userStorage.createUser(new User(0, "test" + i + "@example.com", "user" + i, "User" + i,
+                    LocalDate.of(2000, 1, 1)));
+        }
+
+        List<User> firstPage = userStorage.getUsersPage(0, 2);
+        List<User> secondPage = userStorage.getUsersPage(firstPage.getLast().getId(), 2);
+        List<User> lastPage = userStorage.getUsersPage(secondPage.getLast().getId(), 2);
+
+        assertThat(firstPage).extracting(User::getLogin).containsExactly("user1", "user2");
+        assertThat(secondPage).extracting(User::getLogin).containsExactly("user3", "user4");
+        assertThat(lastPage).extracting(User::getLogin).containsExactly("user5");
+    }
+
     @Test
     void testAddAndRemoveFriend() {
         User user1 = userStorage.createUser(
@@ -94,6 +131,107 @@ class UserDbStorageTests {
         assertThat(updatedFriends).isEmpty();
     }
 
+    @Test
+    void testRepeatedAddFriendIsIgnored() {
+        User user1 = userStorage.createUser(
+                new User(0, "test1@example.com", "user1", "User1", LocalDate.of(2000, 1, 1)));
+        User user2 = userStorage.createUser(
+                new User(0, "test2@example.com", "user2", "User2", LocalDate.of(2001, 1, 1)));
+
+        userStorage.addFriend(user1.getId(), user2.getId());
+        userStorage.addFriend(user1.getId(), user2.getId());
+
+        assertThat(userStorage.getFriends(user1.getId())).containsExactly(user2);
+        assertThat(userStorage.getFriendsCount(user1.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void testGetCommonFriends() {
+        User user1 = userStorage.createUser(
+                new User(0, "test1@example.com", "user1", "User1", LocalDate.of(2000, 1, 1)));
+        User user2 = userStorage.createUser(
+                new User(0, "test2@example.com", "user2", "User2", LocalDate.of(2001, 1, 1)));
+        User common = userStorage.createUser(
+                new User(0, "test3@example.com", "user3", "User3", LocalDate.of(2002, 1, 1)));
+        User other = userStorage.createUser(
+                new User(0, "test4@example.com", "user4", "User4", LocalDate.of(2003, 1, 1)));
+
+        userStorage.addFriend(user1.getId(), common.getId());
+        userStorage.addFriend(user1.getId(), other.getId());
+        userStorage.addFriend(user2.getId(), common.getId());
+
+        assertThat(userStorage.getCommonFriends(user1.getId(), user2.getId()))
+                .containsExactly(common);
+        assertThat(userStorage.getCommonFriends(user2.getId(), other.getId())).isEmpty();
+    }
+
+    @Test
+    void testFriendGraphLoadsConfirmedFriendshipsBothWays() {
+        List<User> users = userStorage.createUsers(List.of(
+                new User(0, "test1@example.com", "user1", "User1", LocalDate.of(2000, 1, 1)),
+                new User(0, "test2@example.com", "user2", "User2", LocalDate.of(2001, 1, 1)),
+                new User(0, "test3@example.com", "user3", "User3", LocalDate.of(2002, 1, 1))));
+        int first = users.get(0).getId();
+        int second = users.get(1).getId();
+        int third = users.get(2).getId();
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id, is_confirmed) VALUES (?, ?, ?)",
+                first, second, true);
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id, is_confirmed) VALUES (?, ?, ?)",
+                first, third, false);
+
+        FriendGraphIndex friendGraph = new FriendGraphIndex(jdbcTemplate);
+
+        assertThat(friendGraph.getFriendIds(first)).containsExactly(second, third);
+        assertThat(friendGraph.getFriendIds(second)).containsExactly(first);
+        assertThat(friendGraph.getFriendIds(third)).isEmpty();
+        assertThat(friendGraph.getCommonFriendIds(third, second)).isEmpty();
+        assertThat(friendGraph.getFriendsCount(first)).isEqualTo(2);
+    }
+
+    @Test
+    void testFriendGraphFollowsChangesOfConfirmedFriendship() {
+        List<User> users = userStorage.createUsers(List.of(
+                new User(0, "test1@example.com", "user1", "User1", LocalDate.of(2000, 1, 1)),
+                new User(0, "test2@example.com", "user2", "User2", LocalDate.of(2001, 1, 1))));
+        int first = users.get(0).getId();
+        int second = users.get(1).getId();
+        jdbcTemplate.update("INSERT INTO friendships (user_id, friend_id, is_confirmed) VALUES (?, ?, ?)",
+                first, second, true);
+        UserDbStorage storage = new UserDbStorage(jdbcTemplate, new FriendGraphIndex(jdbcTemplate),
+                new EntityCache<>("users", 100, Duration.ofMinutes(5), CacheConfig::copyUser,
+                        new SimpleMeterRegistry()));
+
+        // Своя строка второго пользователя и ее удаление не отменяют подтвержденную дружбу
+        storage.addFriend(second, first);
+        assertThat(storage.removeFriend(second, first)).isTrue();
+        assertThat(storage.getFriends(second)).extracting(User::getId).containsExactly(first);
+        assertThat(storage.getFriends(first)).extracting(User::getId).containsExactly(second);
+
+        // Удаление подтвержденной строки убирает связь в обе стороны
+        assertThat(storage.removeFriend(first, second)).isTrue();
+        assertThat(storage.getFriends(first)).isEmpty();
+        assertThat(storage.getFriends(second)).isEmpty();
+        assertThat(new FriendGraphIndex(jdbcTemplate).getFriendIds(second)).isEmpty();
+    }
+
+    @Test
+    void testFriendGraphOverlayIsCompacted() {
+        FriendGraphIndex friendGraph = new FriendGraphIndex(jdbcTemplate);
+
+        for (int friendId = 2; friendId <= 3000; friendId++) {
+            friendGraph.addFriend(1, friendId);
+        }
+        for (int friendId = 3; friendId <= 3000; friendId += 2) {
+            friendGraph.removeFriend(1, friendId);
+        }
+        friendGraph.addFriend(2, 1);
+
+        assertThat(friendGraph.getFriendsCount(1)).isEqualTo(1500);
+        assertThat(friendGraph.getFriendIds(1)).startsWith(2, 4, 6).endsWith(2998, 3000).isSorted();
+        assertThat(friendGraph.getCommonFriendIds(1, 2)).isEmpty();
+        assertThat(friendGraph.getFriendIds(2)).containsExactly(1);
+    }
+
     @Test
     void testGetUserByIdNotFound() {
         assertThatThrownBy(() -> userStorage.getUserById(999))
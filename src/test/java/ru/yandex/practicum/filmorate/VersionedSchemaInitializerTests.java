@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.datasource.VersionedSchemaInitializer;
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VersionedSchemaInitializerTests {
+
+    private final DataSource dataSource =
+            new DriverManagerDataSource("jdbc:h2:mem:versioned-schema-tests;DB_CLOSE_DELAY=-1", "sa", "");
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    @Test
+    void testScriptsRunOnlyWhenVersionChanges() {
+        assertThat(initializer(true).initializeDatabase()).isTrue();
+        jdbcTemplate.update("DELETE FROM genres WHERE genre_id = 1");
+
+        // Перезапуск с теми же скриптами: справочник не перезаписывается
+        assertThat(initializer(true).initializeDatabase()).isFalse();
+        assertThat(genresCount()).isEqualTo(5);
+
+        // Скрипты изменились с прошлого запуска
+        jdbcTemplate.update("UPDATE schema_version SET version = 'old'");
+        assertThat(initializer(true).initializeDatabase()).isTrue();
+        assertThat(genresCount()).isEqualTo(6);
+
+        jdbcTemplate.update("DELETE FROM genres WHERE genre_id = 1");
+        assertThat(initializer(false).initializeDatabase()).isTrue();
+        assertThat(genresCount()).isEqualTo(6);
+    }
+
+    @Test
+    void testVersionIsNotStoredWhenScriptsAreDisabled() {
+        DataSource empty = new DriverManagerDataSource("jdbc:h2:mem:versioned-schema-never;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate emptyJdbcTemplate = new JdbcTemplate(empty);
+
+        assertThat(initializer(empty, DatabaseInitializationMode.NEVER).initializeDatabase()).isFalse();
+        assertThat(emptyJdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables "
+                + "WHERE LOWER(table_name) = 'schema_version'", Integer.class)).isZero();
+
+        // После включения скриптов база создается, а не считается актуальной
+        assertThat(initializer(empty, DatabaseInitializationMode.ALWAYS).initializeDatabase()).isTrue();
+        assertThat(emptyJdbcTemplate.queryForObject("SELECT COUNT(*) FROM genres", Integer.class)).isEqualTo(6);
+    }
+
+    private VersionedSchemaInitializer initializer(boolean versioned) {
+        SqlInitializationProperties properties = new SqlInitializationProperties();
+        properties.setMode(DatabaseInitializationMode.ALWAYS);
+        return new VersionedSchemaInitializer(dataSource, properties, versioned);
+    }
+
+    private static VersionedSchemaInitializer initializer(DataSource dataSource, DatabaseInitializationMode mode) {
+        SqlInitializationProperties properties = new SqlInitializationProperties();
+        properties.setMode(mode);
+        return new VersionedSchemaInitializer(dataSource, properties, true);
+    }
+
+    private int genresCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM genres", Integer.class);
+    }
+}